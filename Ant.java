@@ -1,9 +1,5 @@
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Arrays;
-import java.util.Random;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.SplittableRandom;
 
 public class Ant {
 
@@ -11,8 +7,10 @@ public class Ant {
     private double totalCost;
     private Environment world;
     private int numCities;
-    private List<Integer> greedyTour = new ArrayList<Integer>();
-    private Random rand = new Random();
+    private SplittableRandom rand;
+    private UnvisitedCities unvisited; // reused for every tour the ant builds
+    private double[] probabilities; // scratch buffer for getNextCityProb
+    private KdTree.Remaining remaining; // for constructGreedyTour, created on first use
     private int id;
 
     /**
@@ -24,56 +22,118 @@ public class Ant {
      *              interacting with.
      */
     public Ant(int id, Environment world) {
+        this(id, world, new SplittableRandom());
+    }
+
+    /**
+     * Ant object with its own, possibly seeded, random number generator. All the
+     * random choices the ant makes while constructing tours come from rand, so two
+     * ants with equally seeded generators build the same tours.
+     * 
+     * @param id    The id of the given ant.
+     * @param world The instance of an Environment object that an ant will be
+     *              interacting with.
+     * @param rand  The random number generator of the ant.
+     */
+    public Ant(int id, Environment world, SplittableRandom rand) {
+        this.rand = rand;
         this.id = id;
         this.world = world;
         this.numCities = world.getNumCities();
         this.totalCost = Double.POSITIVE_INFINITY;
         this.tour = new int[this.numCities];
+        this.unvisited = new UnvisitedCities(this.numCities);
+        this.probabilities = new double[this.numCities];
     }
 
     /**
-     * Method to construct a greedy tour where an ant starts at 0. This is used to
-     * calculate tauNot, which is what pheromones are initialized to when we begin
-     * either our ACS or Elitist algorithm. A greedy tour is constructed when an ant
-     * chooses the node closest the current node it is at and adds it to the tour if
-     * it has not yet been visited.
+     * Method to construct a greedy (nearest neighbour) tour: starting at the given
+     * city, the ant keeps moving to the closest city it has not visited yet and
+     * finally returns to the start. The tour and its length become the ant's tour
+     * and total cost, so the ant can serve as the first best tour of a run. Its
+     * length is also used to calculate tauNot, which is what pheromones are
+     * initialized to when we begin either our ACS or Elitist algorithm.
+     * 
+     * The closest unvisited city is found with the spatial index of the
+     * Environment if it has one, which takes O(n log n) time for the whole tour.
+     * Otherwise it is the first unvisited city in the candidate list of the
+     * current city, and only when all candidates have been visited are the
+     * unvisited cities scanned. Nothing is allocated, except for the index's set
+     * of unvisited cities the first time.
      * 
      * @param startingCity Integer representing the starting location of the ant
      *                     when it begins constructing a greedy tour.
      * @return The total length of the greedy tour that the ant has constructed from
-     *         the given starting city (which in our case we choose to be 0).
+     *         the given starting city, including the edge back to it.
      */
     public double constructGreedyTour(int startingCity) {
-        double[][] distances = this.world.getDistanceMatrix().clone();
-        int numCities = this.world.getNumCities();
-
-        double tourLength = 0.0;
+        KdTree spatialIndex = this.world.getSpatialIndex();
+        KdTree.Remaining remaining = null;
+        if (spatialIndex != null) {
+            if (this.remaining == null || this.remaining.getTree() != spatialIndex) {
+                this.remaining = spatialIndex.createRemaining();
+            } else {
+                this.remaining.reset();
+            }
+            remaining = this.remaining;
+            remaining.remove(startingCity);
+        }
 
-        Set<Integer> visited = new HashSet<Integer>();
-        visited.add(startingCity);
+        UnvisitedCities unvisited = this.unvisited;
+        unvisited.reset();
+        unvisited.visit(startingCity);
+        this.tour[0] = startingCity;
 
+        double tourLength = 0.0;
         int currentCity = startingCity;
-        double[] row = distances[currentCity];
-        while (visited.size() < numCities) {
-            double currDistance = Double.POSITIVE_INFINITY;
-            int bestCitySoFar = 0;
-            row = distances[bestCitySoFar];
-            for (int i = 0; i < row.length; i++) {
-                if ((row[i] < currDistance) && !visited.contains(i)) {
-
-                    currDistance = row[i];
-                    bestCitySoFar = i;
-                }
+        for (int position = 1; position < this.numCities; position++) {
+            int nextCity = remaining != null ? remaining.findNearest(currentCity) : getNearestUnvisited(currentCity);
+            tourLength += this.world.getDistance(currentCity, nextCity);
+            this.tour[position] = nextCity;
+            unvisited.visit(nextCity);
+            if (remaining != null) {
+                remaining.remove(nextCity);
             }
-            tourLength += currDistance;
-            currentCity = bestCitySoFar;
-            greedyTour.add(bestCitySoFar);
-            visited.add(bestCitySoFar);
+            currentCity = nextCity;
         }
+        tourLength += this.world.getDistance(currentCity, startingCity);
+
         this.totalCost = tourLength;
         return tourLength;
     }
 
+    /**
+     * Finds the unvisited city closest to a city, looking at its candidate list
+     * first.
+     * 
+     * @param cityId The id of the current city.
+     * @return The id of the closest unvisited city.
+     */
+    private int getNearestUnvisited(int cityId) {
+        UnvisitedCities unvisited = this.unvisited;
+        int[] candidates = this.world.getCandidateList(cityId);
+        if (candidates != null) {
+            // the candidates are sorted by distance, so the first unvisited one is the closest of all
+            for (int i = 0; i < candidates.length; i++) {
+                if (!unvisited.isVisited(candidates[i])) {
+                    return candidates[i];
+                }
+            }
+        }
+
+        double closestDistance = Double.POSITIVE_INFINITY;
+        int closestCity = unvisited.get(0);
+        for (int i = 0; i < unvisited.size(); i++) {
+            int city = unvisited.get(i);
+            double distance = this.world.getDistance(cityId, city);
+            if (distance < closestDistance) {
+                closestDistance = distance;
+                closestCity = city;
+            }
+        }
+        return closestCity;
+    }
+
     /**
      * Method for calculating the value that we are going to the pheromones on all
      * edges equal to.
@@ -82,10 +142,20 @@ public class Ant {
      *         initially.
      */
     public double calculateInitialPhermone() {
-        double answer = 1.0 / this.constructGreedyTour(0) * this.world.getNumCities();
-        return answer;
+        return initialPheromone(this.constructGreedyTour(0), this.world.getNumCities());
     }
 
+    /**
+     * Computes tauNot from the length of a greedy tour, as calculateInitialPhermone
+     * does, so that the solvers can use a greedy tour they built themselves.
+     * 
+     * @param greedyTourLength The length of a nearest neighbour tour.
+     * @param numCities        The number of cities.
+     * @return tauNot.
+     */
+    public static double initialPheromone(double greedyTourLength, int numCities) {
+        return 1.0 / greedyTourLength * numCities;
+    }
 
     /**
      * Method used to make a tour in the ACS algorithm using the psuedorandom
@@ -98,8 +168,22 @@ public class Ant {
      * @return The cost of the tour after it has been created.
      */
     public double makeACSProbTour() {
+        return makeACSProbTour(true);
+    }
+
+    /**
+     * Same as makeACSProbTour(), but lets the caller skip the local pheromone
+     * update while the tour is being built. Used when several ants construct
+     * their tours concurrently, in which case the local update is applied
+     * afterwards (see Environment.antColonySystemLocalUpdate(int[])).
+     * 
+     * @param localUpdate Whether to wear away the pheromones on each added edge.
+     * @return The cost of the tour after it has been created.
+     */
+    public double makeACSProbTour(boolean localUpdate) {
 
-        Set<Integer> visitedCities = new HashSet<Integer>();
+        UnvisitedCities unvisited = this.unvisited;
+        unvisited.reset();
         Arrays.fill(this.tour, 0);
 
         int worldSize = this.world.getNumCities();
@@ -109,27 +193,29 @@ public class Ant {
 
         int startingCity = rand.nextInt(worldSize);
 
-        visitedCities.add(startingCity);
+        unvisited.visit(startingCity);
         this.tour[tourCounter] = startingCity;
         tourCounter++;
 
         int currentCityId = startingCity;
-        while (visitedCities.size() < worldSize) {
+        while (unvisited.size() > 0) {
 
             double randDouble = rand.nextDouble();
             int nextCityId = startingCity;
 
             if (randDouble < q) {
-                nextCityId = this.world.getNextCityGreedy(currentCityId, visitedCities);
+                nextCityId = this.world.getNextCityGreedy(currentCityId, unvisited);
             } else {
-                nextCityId = this.world.getNextCityProb(currentCityId, visitedCities);
+                nextCityId = this.world.getNextCityProb(currentCityId, unvisited, this.probabilities, this.rand);
             }
 
             // perform the wearing away on the added edge while constructing the tour (local update)
-            this.world.antColonySystemLocalUpdate(currentCityId, nextCityId);
+            if (localUpdate) {
+                this.world.antColonySystemLocalUpdate(currentCityId, nextCityId);
+            }
 
             tour[tourCounter] = nextCityId;
-            visitedCities.add(nextCityId);
+            unvisited.visit(nextCityId);
             tourLength += this.world.getDistance(currentCityId, nextCityId);
             tourCounter++;
             currentCityId = nextCityId;
@@ -151,7 +237,8 @@ public class Ant {
      */
     public double makeElitistProbTour() {
 
-        Set<Integer> visitedCities = new HashSet<Integer>();
+        UnvisitedCities unvisited = this.unvisited;
+        unvisited.reset();
         Arrays.fill(this.tour, 0);
 
         int worldSize = this.world.getNumCities();
@@ -161,19 +248,19 @@ public class Ant {
 
         int startingCity = rand.nextInt(worldSize);
 
-        visitedCities.add(startingCity);
+        unvisited.visit(startingCity);
         this.tour[tourCounter] = startingCity;
         tourCounter++;
 
         int currentCityId = startingCity;
-        while (visitedCities.size() < worldSize) {
+        while (unvisited.size() > 0) {
 
             int nextCityId = startingCity;
 
-            nextCityId = this.world.getNextCityProb(currentCityId, visitedCities);
+            nextCityId = this.world.getNextCityProb(currentCityId, unvisited, this.probabilities, this.rand);
 
             tour[tourCounter] = nextCityId;
-            visitedCities.add(nextCityId);
+            unvisited.visit(nextCityId);
             tourLength += this.world.getDistance(currentCityId, nextCityId);
             tourCounter++;
             currentCityId = nextCityId;
@@ -185,6 +272,18 @@ public class Ant {
         return tourLength;
     }
 
+    /**
+     * Runs a local search on the ant's current tour and updates the ant's tour
+     * and total cost with the result.
+     * 
+     * @param localSearch The local search to apply.
+     * @return The cost of the improved tour.
+     */
+    public double improveTour(LocalSearch localSearch) {
+        this.totalCost = localSearch.improve(this.tour, this.totalCost);
+        return this.totalCost;
+    }
+
     /**
      * String representation of an Ant, which is just its id number.
      * 
@@ -226,13 +325,37 @@ public class Ant {
     }
 
     /**
-     * Copy the current ant object.
+     * Same as setTour(int[]), but takes the cost of the new tour instead of
+     * summing its edges again.
+     * 
+     * @param newTour The newTour that we want to set the ant's tour instance to.
+     * @param cost    The total cost of newTour.
+     */
+    public void setTour(int[] newTour, double cost) {
+        this.tour = newTour.clone();
+        this.totalCost = cost;
+    }
+
+    /**
+     * Copies another ant's tour and total cost into this ant's tour buffer,
+     * without allocating. Used to keep a snapshot of the best tour so far.
+     * 
+     * @param other The ant whose tour is copied (of the same Environment).
+     */
+    public void copyTour(Ant other) {
+        System.arraycopy(other.tour, 0, this.tour, 0, this.tour.length);
+        this.totalCost = other.totalCost;
+    }
+
+    /**
+     * Copy the current ant object. The copy takes over the ant's total cost, so
+     * the tour is not summed again.
      * 
      * @return New Ant object that is the same at the current ant.
      */
     public Ant cloneAnt() {
         Ant newAnt = new Ant(this.id, this.world);
-        newAnt.setTour(this.tour);
+        newAnt.setTour(this.tour, this.totalCost);
         return newAnt;
     }
 
@@ -0,0 +1,622 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Common base of the ant colony algorithms. Holds the problem information and
+ * takes care of having the ants construct their tours, either one after the
+ * other or concurrently on a pool of threads.
+ * 
+ * When tours are built in parallel, each ant only touches its own state (tour,
+ * visited cities and random number generator) while reading the shared
+ * Environment. Anything that writes to the Environment, i.e. the pheromone
+ * updates and the best ant bookkeeping, is done by the calling thread once every
+ * ant has finished its tour.
+ * 
+ * A run stops after numIterations iterations, or earlier when one of the
+ * optional stopping criteria is met: a time limit, a target tour cost, or a
+ * number of iterations without improvement. The time limit and the target are
+ * also checked after every ant, so a run can end in the middle of an
+ * iteration; the best tour found so far is then still available from
+ * getBestTour and getBestCost.
+ * 
+ * A run starts with nearest neighbour tours from one or more starting cities
+ * (see setGreedyStarts). The best of them gives tauNot and, optionally, is the
+ * first best tour of the run (see setStartFromGreedyTour).
+ * 
+ * Several colonies can run side by side with a MultiColonyOptimizer, which
+ * has them exchange their best tours every few iterations.
+ * 
+ * Progress is reported to the OptimizationListeners added with addListener:
+ * every improvement of the best tour and the end of every iteration. Nothing is
+ * printed unless a ConsoleListener is added.
+ */
+public abstract class AntColonyOptimizer {
+
+    protected Environment env;
+    protected List<City> cityList = new ArrayList<City>();
+    protected int numIterations;
+
+    private int numThreads = 1;
+    private ExecutorService executor;
+    private Long seed; // null for an unseeded run
+    private LocalSearch localSearch; // null to use the constructed tours as they are
+    private LocalSearchScope localSearchScope = LocalSearchScope.ALL_ANTS;
+
+    private long timeLimitNanos = Long.MAX_VALUE; // no time limit
+    private double targetCost = Double.NEGATIVE_INFINITY; // no target
+    private int maxStagnantIterations = Integer.MAX_VALUE; // no stagnation limit
+    private long deadline;
+    private volatile boolean stopped; // written by the construction threads
+    private double lastBestCost;
+    private int lastImprovement;
+    private Ant bestAnt; // the best tour so far of the current (or last) run
+    private Ant greedyAnt; // the nearest neighbour tour of the current (or last) run
+    private long runStart;
+    private int greedyStarts = 1;
+    private boolean startFromGreedyTour;
+    private MultiColonyOptimizer colonies; // set while running as one of several colonies
+    private int colonyIndex;
+    private List<OptimizationListener> listeners = new ArrayList<OptimizationListener>();
+
+    /**
+     * Constructor shared by the algorithms.
+     * 
+     * @param env           The particular environment the algorithm will be
+     *                      operating within.
+     * @param cityList      The list of City objects (read in when starting the
+     *                      problem).
+     * @param numIterations The number of iterations the problem will be run for.
+     */
+    protected AntColonyOptimizer(Environment env, List<City> cityList, int numIterations) {
+        this.env = env;
+        this.cityList = cityList;
+        this.numIterations = numIterations;
+    }
+
+    /**
+     * Performs the necessary optimization steps of the algorithm.
+     * 
+     * @return A list of the bestScores every 10 iterations (used to analyze our
+     *         tests).
+     */
+    public abstract List<Double> optimize();
+
+    /**
+     * Sets the number of threads the ants construct their tours on. With 1 (the
+     * default) the ants build their tours one after the other on the calling
+     * thread.
+     * 
+     * @param numThreads The number of tour construction threads.
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be at least 1");
+        }
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Getter for the number of tour construction threads.
+     * 
+     * @return The number of threads.
+     */
+    public int getNumThreads() {
+        return this.numThreads;
+    }
+
+    /**
+     * Sets the master seed of the run. Every ant's random number generator is
+     * derived from it, so two runs with the same seed, the same parameters and
+     * the same number of threads produce identical tours and bests lists, also
+     * when the tours are built in parallel. The seed alone does not determine a
+     * run: reproducing one takes the same seed and the same sequential or
+     * parallel mode (see setNumThreads), because ACS defers its local updates
+     * when it runs on more than one thread, so a sequential and a parallel ACS
+     * run with the same seed differ.
+     * 
+     * @param seed The master seed.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Creates the generator the ants' random number generators are split off.
+     * 
+     * @return A generator seeded with the master seed, or an unseeded one if no
+     *         seed was set.
+     */
+    protected SplittableRandom createRandom() {
+        if (this.seed == null) {
+            return new SplittableRandom();
+        }
+        return new SplittableRandom(this.seed);
+    }
+
+    /**
+     * Sets a wall-clock time limit for optimize, counted from the moment it is
+     * called. Once the limit is reached no further ant starts a tour, and the run
+     * ends with the best tour found so far.
+     * 
+     * @param millis The time limit in milliseconds.
+     */
+    public void setTimeLimit(long millis) {
+        this.timeLimitNanos = millis * 1000000L;
+    }
+
+    /**
+     * Sets a target tour cost, e.g. the length of the optimal tour of the
+     * problem. The run ends as soon as an ant builds a tour that is at least as
+     * short.
+     * 
+     * @param targetCost The target cost.
+     */
+    public void setTargetCost(double targetCost) {
+        this.targetCost = targetCost;
+    }
+
+    /**
+     * Sets the number of iterations in a row without an improvement of the best
+     * tour after which the run ends.
+     * 
+     * @param maxStagnantIterations The number of iterations, at least 1.
+     */
+    public void setMaxStagnantIterations(int maxStagnantIterations) {
+        if (maxStagnantIterations < 1) {
+            throw new IllegalArgumentException("maxStagnantIterations must be at least 1");
+        }
+        this.maxStagnantIterations = maxStagnantIterations;
+    }
+
+    /**
+     * Sets the number of starting cities of the nearest neighbour tours built at
+     * the beginning of a run. With 1 (the default) the only tour starts at city
+     * 0; with more, the starting cities are spread evenly over the city ids and
+     * the tours are built on the tour construction threads.
+     * 
+     * @param greedyStarts The number of nearest neighbour tours, at least 1.
+     */
+    public void setGreedyStarts(int greedyStarts) {
+        if (greedyStarts < 1) {
+            throw new IllegalArgumentException("greedyStarts must be at least 1");
+        }
+        this.greedyStarts = greedyStarts;
+    }
+
+    /**
+     * Sets whether the best nearest neighbour tour is the first best tour of a
+     * run (improved by the local search, if it applies to the best tour), so the
+     * ants have to beat it and the first pheromone deposits can go to it. Off by
+     * default.
+     * 
+     * @param startFromGreedyTour Whether to start from the nearest neighbour tour.
+     */
+    public void setStartFromGreedyTour(boolean startFromGreedyTour) {
+        this.startFromGreedyTour = startFromGreedyTour;
+    }
+
+    /**
+     * Adds a listener that is told about every improvement of the best tour and
+     * the end of every iteration.
+     * 
+     * @param listener The listener, e.g. a ConsoleListener.
+     */
+    public void addListener(OptimizationListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with addListener.
+     * 
+     * @param listener The listener.
+     */
+    public void removeListener(OptimizationListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Tells the listeners that the best tour so far has improved.
+     * 
+     * @param bestAnt   The ant holding the best tour so far.
+     * @param iteration The current iteration.
+     */
+    protected void notifyBestImproved(Ant bestAnt, int iteration) {
+        if (this.listeners.isEmpty()) {
+            return;
+        }
+        long elapsedNanos = System.nanoTime() - this.runStart;
+        for (int i = 0; i < this.listeners.size(); i++) {
+            this.listeners.get(i).bestImproved(bestAnt.getTour(), bestAnt.getTotalCost(), iteration, elapsedNanos);
+        }
+    }
+
+    /**
+     * Tells the listeners that an iteration is complete.
+     * 
+     * @param iteration The iteration that was completed.
+     * @param bestCost  The cost of the best tour so far.
+     */
+    protected void notifyIterationCompleted(int iteration, double bestCost) {
+        if (this.listeners.isEmpty()) {
+            return;
+        }
+        long elapsedNanos = System.nanoTime() - this.runStart;
+        for (int i = 0; i < this.listeners.size(); i++) {
+            this.listeners.get(i).iterationCompleted(iteration, bestCost, elapsedNanos);
+        }
+    }
+
+    /**
+     * Getter for the best tour of the last run. It is the solver's own buffer, so
+     * it should be copied if it is kept across runs. If the run stopped before any
+     * ant built a tour (e.g. the time limit passed while the distances were being
+     * computed), it is the nearest neighbour tour the run started with.
+     * 
+     * @return The best tour found so far, or null if optimize has not been
+     *         called.
+     */
+    public int[] getBestTour() {
+        Ant best = this.getBestAnt();
+        return best == null ? null : best.getTour();
+    }
+
+    /**
+     * Getter for the cost of the best tour of the last run, i.e. of getBestTour.
+     * 
+     * @return The cost of the best tour found so far (infinite if there is none).
+     */
+    public double getBestCost() {
+        Ant best = this.getBestAnt();
+        return best == null ? Double.POSITIVE_INFINITY : best.getTotalCost();
+    }
+
+    // the ant holding the best tour so far, or the nearest neighbour tour while no ant has built one
+    private Ant getBestAnt() {
+        if (this.bestAnt != null && this.bestAnt.getTotalCost() == Double.POSITIVE_INFINITY
+                && this.greedyAnt != null) {
+            return this.greedyAnt;
+        }
+        return this.bestAnt;
+    }
+
+    /**
+     * Starts the clock of a run and resets the stopping criteria. Called at the
+     * beginning of optimize.
+     * 
+     * @return The ant whose buffer the best tour so far is copied into, initially
+     *         with an infinite cost.
+     */
+    protected Ant startRun() {
+        long now = System.nanoTime();
+        this.runStart = now;
+        this.deadline = this.timeLimitNanos == Long.MAX_VALUE ? Long.MAX_VALUE : now + this.timeLimitNanos;
+        this.stopped = false;
+        this.lastBestCost = Double.POSITIVE_INFINITY;
+        this.lastImprovement = 0;
+        this.bestAnt = new Ant(-1, this.env);
+        this.greedyAnt = null;
+        return this.bestAnt;
+    }
+
+    /**
+     * Builds a nearest neighbour tour from every starting city (see
+     * setGreedyStarts) and returns the shortest. The starts are divided among
+     * the tour construction threads. The tour stands in for the best tour of the
+     * run (see getBestTour) until an ant has built one.
+     * 
+     * @return An ant holding the shortest nearest neighbour tour and its length.
+     */
+    protected Ant constructGreedyTour() {
+        final int numStarts = Math.min(this.greedyStarts, this.env.getNumCities());
+        final int numWorkers = Math.min(this.numThreads, numStarts);
+        if (numWorkers == 1) {
+            this.greedyAnt = constructGreedyTours(0, 1, numStarts);
+            return this.greedyAnt;
+        }
+
+        final Ant[] workerBests = new Ant[numWorkers];
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int w = 0; w < numWorkers; w++) {
+            final int worker = w;
+            tasks.add(() -> {
+                workerBests[worker] = constructGreedyTours(worker, numWorkers, numStarts);
+                return null;
+            });
+        }
+        runTasks(tasks, "the nearest neighbour tours");
+
+        Ant best = workerBests[0];
+        for (int w = 1; w < numWorkers; w++) {
+            if (workerBests[w].getTotalCost() < best.getTotalCost()) {
+                best = workerBests[w];
+            }
+        }
+        this.greedyAnt = best;
+        return best;
+    }
+
+    /**
+     * Builds the nearest neighbour tours of one thread, reusing two ants for all
+     * of them.
+     * 
+     * @param worker     The index of the thread.
+     * @param numWorkers The number of threads.
+     * @param numStarts  The number of starting cities in total.
+     * @return An ant holding the shortest of the thread's tours.
+     */
+    private Ant constructGreedyTours(int worker, int numWorkers, int numStarts) {
+        int numCities = this.env.getNumCities();
+        Ant ant = new Ant(-1, this.env);
+        Ant workerBest = new Ant(-1, this.env);
+        for (int start = worker; start < numStarts; start += numWorkers) {
+            ant.constructGreedyTour((int) ((long) start * numCities / numStarts));
+            if (ant.getTotalCost() < workerBest.getTotalCost()) {
+                workerBest.copyTour(ant);
+            }
+        }
+        return workerBest;
+    }
+
+    /**
+     * Makes the nearest neighbour tour the first best tour of the run, if
+     * setStartFromGreedyTour is on.
+     * 
+     * @param bestAnt   The ant holding the best tour so far (see startRun).
+     * @param greedyAnt The ant holding the nearest neighbour tour.
+     * @return The cost of the best tour so far, infinite if the run does not
+     *         start from the nearest neighbour tour.
+     */
+    protected double startFromGreedyTour(Ant bestAnt, Ant greedyAnt) {
+        if (!this.startFromGreedyTour) {
+            return Double.POSITIVE_INFINITY;
+        }
+        bestAnt.copyTour(greedyAnt);
+        double bestCost = this.improveGlobalBest(bestAnt);
+        this.notifyBestImproved(bestAnt, 0);
+        return bestCost;
+    }
+
+    /**
+     * Called by a MultiColonyOptimizer before it runs this colony, and with null
+     * once the run is over.
+     * 
+     * @param colonies    The MultiColonyOptimizer, or null.
+     * @param colonyIndex The index of this colony among its colonies.
+     */
+    void joinColonies(MultiColonyOptimizer colonies, int colonyIndex) {
+        this.colonies = colonies;
+        this.colonyIndex = colonyIndex;
+    }
+
+    /**
+     * When running as one of the colonies of a MultiColonyOptimizer, exchanges
+     * best tours with the other colonies every migration interval: if the best
+     * tour of all colonies is shorter than this colony's, it becomes this
+     * colony's best tour, so the following pheromone updates deposit on it. Waits
+     * until the other colonies have done as many iterations. Does nothing
+     * otherwise.
+     * 
+     * @param bestAnt   The ant holding the best tour so far.
+     * @param bestCost  The cost of the best tour so far.
+     * @param iteration The number of iterations done so far.
+     * @return The cost of the best tour so far, after the exchange.
+     */
+    protected double exchangeBestTour(Ant bestAnt, double bestCost, int iteration) {
+        if (this.colonies == null || iteration % this.colonies.getMigrationInterval() != 0) {
+            return bestCost;
+        }
+        if (!this.colonies.exchangeBestTour(this.colonyIndex, bestAnt)) {
+            return bestCost;
+        }
+        this.notifyBestImproved(bestAnt, iteration);
+        return bestAnt.getTotalCost();
+    }
+
+    /**
+     * Whether the run has to end, i.e. a stopping criterion was met during tour
+     * construction or at the end of an iteration. Checked right after the tours
+     * have been built, so the ants that did build one are still taken into
+     * account, and the pheromone update of an interrupted iteration is skipped.
+     * 
+     * @return True if the run is over.
+     */
+    protected boolean isStopped() {
+        return this.stopped;
+    }
+
+    /**
+     * Checks the stopping criteria at the end of an iteration.
+     * 
+     * @param iteration The number of iterations done so far.
+     * @param bestCost  The cost of the best tour so far.
+     * @return True if the run has to end.
+     */
+    protected boolean shouldStop(int iteration, double bestCost) {
+        if (bestCost < this.lastBestCost) {
+            this.lastBestCost = bestCost;
+            this.lastImprovement = iteration;
+        }
+        if (bestCost <= this.targetCost || iteration - this.lastImprovement >= this.maxStagnantIterations) {
+            this.stopped = true;
+        }
+        return this.stopped || deadlinePassed();
+    }
+
+    /**
+     * Checks the time limit.
+     * 
+     * @return True (and the run is stopped) if the time limit has been reached.
+     */
+    private boolean deadlinePassed() {
+        if (this.deadline != Long.MAX_VALUE && System.nanoTime() - this.deadline >= 0) {
+            this.stopped = true;
+        }
+        return this.stopped;
+    }
+
+    /**
+     * Has an ant build a tour, unless the run has been stopped, and stops the run
+     * if the tour reaches the target cost.
+     * 
+     * @param ant      The ant.
+     * @param makeTour The tour construction method.
+     */
+    private void constructTour(Ant ant, ToDoubleFunction<Ant> makeTour) {
+        if (deadlinePassed()) {
+            return;
+        }
+        if (makeTour.applyAsDouble(ant) <= this.targetCost) {
+            this.stopped = true;
+        }
+    }
+
+    /**
+     * Adds a local search stage after tour construction.
+     * 
+     * @param localSearch      The local search, e.g. a TwoOptLocalSearch, or null
+     *                         to switch local search off.
+     * @param localSearchScope Which tours it is applied to: every ant's, the
+     *                         iteration best or the best so far.
+     */
+    public void setLocalSearch(LocalSearch localSearch, LocalSearchScope localSearchScope) {
+        this.localSearch = localSearch;
+        this.localSearchScope = localSearchScope;
+    }
+
+    /**
+     * Whether a local search stage has been added.
+     * 
+     * @return True if tours are improved by a local search.
+     */
+    protected boolean hasLocalSearch() {
+        return this.localSearch != null;
+    }
+
+    /**
+     * Wraps a tour construction method so that, if local search is applied to
+     * every ant, each ant improves its tour right after building it (on the same
+     * thread).
+     * 
+     * @param makeTour The tour construction method.
+     * @return The method followed by the local search, or makeTour itself.
+     */
+    protected ToDoubleFunction<Ant> withLocalSearch(final ToDoubleFunction<Ant> makeTour) {
+        if (this.localSearch == null || this.localSearchScope != LocalSearchScope.ALL_ANTS) {
+            return makeTour;
+        }
+        final LocalSearch localSearch = this.localSearch;
+        return ant -> {
+            makeTour.applyAsDouble(ant);
+            return ant.improveTour(localSearch);
+        };
+    }
+
+    /**
+     * If local search is applied to the iteration best, improves the tour of the
+     * best of the ants at positions first, first + 1, ... of antList.
+     * 
+     * @param antList The ants of the Environment.
+     * @param first   The index of the first ant that built a tour.
+     */
+    protected void improveIterationBest(List<Ant> antList, int first) {
+        if (this.localSearch == null || this.localSearchScope != LocalSearchScope.ITERATION_BEST
+                || this.stopped) {
+            return;
+        }
+        Ant iterationBest = antList.get(first);
+        for (int j = first + 1; j < antList.size(); j++) {
+            if (antList.get(j).getTotalCost() < iterationBest.getTotalCost()) {
+                iterationBest = antList.get(j);
+            }
+        }
+        iterationBest.improveTour(this.localSearch);
+    }
+
+    /**
+     * If local search is applied to the best tour so far, improves it. Called
+     * whenever a new best ant was found.
+     * 
+     * @param bestAnt The ant holding the best tour so far.
+     * @return The (possibly improved) cost of the best tour so far.
+     */
+    protected double improveGlobalBest(Ant bestAnt) {
+        if (this.localSearch == null || this.localSearchScope != LocalSearchScope.GLOBAL_BEST || this.stopped) {
+            return bestAnt.getTotalCost();
+        }
+        return bestAnt.improveTour(this.localSearch);
+    }
+
+    /**
+     * Has the ants at positions first, first + 1, ... of antList construct a tour
+     * with the given method and waits until all of them are done. Once the run is
+     * stopped (time limit or target cost reached) the remaining ants are skipped
+     * and keep their previous tours.
+     * 
+     * @param antList     The ants of the Environment.
+     * @param first       The index of the first ant that builds a tour.
+     * @param makeTour    The tour construction method, e.g.
+     *                    Ant::makeElitistProbTour.
+     */
+    protected void constructTours(List<Ant> antList, int first, final ToDoubleFunction<Ant> makeTour) {
+        if (this.numThreads == 1) {
+            for (int j = first; j < antList.size() && !this.stopped; j++) {
+                constructTour(antList.get(j), makeTour);
+            }
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int j = first; j < antList.size(); j++) {
+            final Ant ant = antList.get(j);
+            tasks.add(() -> {
+                if (!this.stopped) {
+                    constructTour(ant, makeTour);
+                }
+                return null;
+            });
+        }
+        runTasks(tasks, "the tours");
+    }
+
+    /**
+     * Runs tasks on the tour construction threads, starting them if needed, and
+     * waits for all of them.
+     * 
+     * @param tasks The tasks.
+     * @param what  What the tasks construct, for the error messages.
+     */
+    private void runTasks(List<Callable<Void>> tasks, String what) {
+        if (this.executor == null) {
+            this.executor = Executors.newFixedThreadPool(this.numThreads);
+        }
+
+        try {
+            for (Future<Void> future : this.executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while constructing " + what, e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to construct " + what, e.getCause());
+        }
+    }
+
+    /**
+     * Stops the tour construction threads (if any were started). Called at the end
+     * of optimize.
+     */
+    protected void shutdown() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+            this.executor = null;
+        }
+    }
+}
@@ -1,11 +1,7 @@
 import java.util.List;
 import java.util.ArrayList;
 
-public class AntColonySystem {
-
-    private Environment env;
-    private List<City> cityList = new ArrayList<City>();
-    private int numIterations;
+public class AntColonySystem extends AntColonyOptimizer {
 
     /**
      * Constructor to create an instance of an AntColonySystem object, that will
@@ -18,65 +14,108 @@ public class AntColonySystem {
      * @param numIterations The number of iterations the problem will be run for.
      */
     public AntColonySystem(Environment env, List<City> cityList, int numIterations) {
-        this.env = env;
-        this.cityList = cityList;
-        this.numIterations = numIterations;
+        super(env, cityList, numIterations);
     }
 
     /**
      * Performs the necessary steps of ACS optimization.
      * 
+     * When the ants build their tours on more than one thread, the ACS local
+     * pheromone update is deferred: ants do not wear away the pheromones while
+     * constructing, and once all tours are done the local update is applied to the
+     * legs of every tour, ant by ant in list order. Within an iteration the ants
+     * therefore do not see each other's local updates, but the result does not
+     * depend on how the threads were scheduled.
+     * 
      * @return A list of the bestScores every 10 iterations (used to analyze our
      *         tests).
      */
     public List<Double> optimize() {
+        // start the clock of the stopping criteria, the best tour so far is copied
+        // into bestAnt's buffer
+        Ant bestAnt = this.startRun();
+
         // initialize the enviroment adjacency matrix
         this.env.calculateDistances(cityList);
 
-        // calculate tauNot and initialize the pheromone adjacency matrix
-        Ant testAnt = new Ant(-1, this.env);
-        double tauNot = testAnt.calculateInitialPhermone();
+        // restrict tour construction to the k nearest neighbours (if enabled)
+        this.env.buildCandidateLists();
+
+        // calculate tauNot from the nearest neighbour tour
+        // and initialize the pheromone adjacency matrix
+        Ant greedyAnt = this.constructGreedyTour();
+        double tauNot = Ant.initialPheromone(greedyAnt.getTotalCost(), this.env.getNumCities());
         this.env.setInitialPheromones(tauNot);
 
         // set the list of ants in the environment
-        this.env.setAntList();
+        this.env.setAntList(this.createRandom());
 
         List<Ant> antList = this.env.getAntList();
-        List<Ant> bestAntsList = new ArrayList<Ant>();
         List<Double> bests = new ArrayList<Double>();
 
-        // initialize the bests
+        // local updates are done during construction only when it is sequential
+        boolean deferLocalUpdates = this.getNumThreads() > 1;
+
+        // initialize the bests, possibly with the nearest neighbour tour
         int i = 0;
-        Ant bestAnt = antList.get(0);
-        double bestScore = Double.POSITIVE_INFINITY;
-
-        while (i < this.numIterations) {
-            // iterate through all the ants
-            for (int j = 1; j < antList.size(); j++) {
-                // have each ant make a tour
-                double tourCost = antList.get(j).makeACSProbTour();
-
-                // if the tourCost is better, then reset the tours
-                if (tourCost < bestScore) {
-                    bestScore = tourCost;
-                    bestAnt = antList.get(j);
-                    bestAnt = antList.get(j).cloneAnt();
+        double bestScore = this.startFromGreedyTour(bestAnt, greedyAnt);
+
+        try {
+            while (i < this.numIterations) {
+                // have each ant make a tour (and improve it, depending on the local search)
+                this.constructTours(antList, 1,
+                        this.withLocalSearch(ant -> ant.makeACSProbTour(!deferLocalUpdates)));
+                this.improveIterationBest(antList, 1);
+                boolean newBest = false;
+
+                // iterate through all the ants
+                for (int j = 1; j < antList.size(); j++) {
+                    if (deferLocalUpdates) {
+                        this.env.antColonySystemLocalUpdate(antList.get(j).getTour());
+                    }
+
+                    double tourCost = antList.get(j).getTotalCost();
+
+                    // if the tourCost is better, then reset the tours
+                    if (tourCost < bestScore) {
+                        bestScore = tourCost;
+                        bestAnt.copyTour(antList.get(j));
+                        newBest = true;
+                    }
                 }
 
-                bestAntsList.add(bestAnt);
-            }
+                if (newBest) {
+                    bestScore = this.improveGlobalBest(bestAnt);
+                    this.notifyBestImproved(bestAnt, i);
+                }
+
+                // the time limit or the target was reached while the ants were building tours,
+                // the best tour so far includes the ants that did build one
+                if (this.isStopped()) {
+                    break;
+                }
 
-            // perfom the global update on the best ant found
-            this.env.antColonySystemGlobalUpdate(bestAnt);
+                // perfom the global update on the best ant found
+                this.env.antColonySystemGlobalUpdate(bestAnt);
 
-            System.out.println("************** COMPLETED the " + i + "iteration ... " + bestScore);
-            i++;
+                this.notifyIterationCompleted(i, bestScore);
+                i++;
 
-            if (i % 10 == 0) {
-                bests.add(bestScore);
+                // take over the best tour of the other colonies, if there are any and it is shorter
+                bestScore = this.exchangeBestTour(bestAnt, bestScore, i);
+
+                if (i % 10 == 0) {
+                    bests.add(bestScore);
+                }
+
+                if (this.shouldStop(i, bestScore)) {
+                    break;
+                }
             }
+        } finally {
+            this.shutdown();
         }
         return bests;
     }
 
-}
\ No newline at end of file
+}
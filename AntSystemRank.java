@@ -0,0 +1,152 @@
+import java.util.List;
+import java.util.ArrayList;
+
+/**
+ * Rank-based Ant System (Bullnheimer, Hartl and Strauss). The ants build their
+ * tours with the random proportional rule, as in EAS, but instead of every ant
+ * depositing pheromones only the numRanks - 1 best ants of the iteration do,
+ * weighted by their rank, together with the best ant so far (see
+ * Environment.rankBasedGlobalUpdate).
+ * 
+ * The best ants are found by partial selection: a sorted buffer of numRanks - 1
+ * ants is kept while going over the colony once, so ranking costs O(m * w)
+ * rather than sorting all m ants.
+ */
+public class AntSystemRank extends AntColonyOptimizer {
+
+    private int numRanks = 6;
+
+    /**
+     * Constructor for the instance of the AntSystemRank algorithm. Will run
+     * optimize to optimize the algorithm.
+     * 
+     * @param env           The Environment instance we will be operating within.
+     * @param cityList      The list of City objects (i.e. problem information we
+     *                      read in).
+     * @param numIterations The number of iterations we would like the algorithm
+     *                      to run for.
+     */
+    public AntSystemRank(Environment env, List<City> cityList, int numIterations) {
+        super(env, cityList, numIterations);
+    }
+
+    /**
+     * Sets the number of ranks w: the w - 1 best ants of each iteration and the
+     * best ant so far deposit pheromones. The default is 6.
+     * 
+     * @param numRanks The number of ranks, at least 2.
+     */
+    public void setNumRanks(int numRanks) {
+        if (numRanks < 2) {
+            throw new IllegalArgumentException("numRanks must be at least 2");
+        }
+        this.numRanks = numRanks;
+    }
+
+    /**
+     * Performs the necessary optimization steps for the rank-based Ant System.
+     * 
+     * @return A list of the bestScores every 10 iterations (used to analyze our
+     *         tests).
+     */
+    public List<Double> optimize() {
+        // start the clock of the stopping criteria, the best tour so far is copied
+        // into bestAnt's buffer
+        Ant bestAnt = this.startRun();
+
+        // initialize the distances adjacency matrix
+        this.env.calculateDistances(cityList);
+
+        // restrict tour construction to the k nearest neighbours (if enabled)
+        this.env.buildCandidateLists();
+
+        // calculate tauNot from the nearest neighbour tour
+        // and initialize the pheromones adjacency matrix
+        Ant greedyAnt = this.constructGreedyTour();
+        double tauNot = Ant.initialPheromone(greedyAnt.getTotalCost(), this.env.getNumCities());
+        this.env.setInitialPheromones(tauNot);
+
+        // set the environment ant list
+        this.env.setAntList(this.createRandom());
+
+        List<Ant> antList = this.env.getAntList();
+        List<Double> bests = new ArrayList<Double>();
+
+        // the best ants of each iteration, best first
+        Ant[] rankedAnts = new Ant[Math.min(this.numRanks - 1, antList.size())];
+
+        // possibly start from the nearest neighbour tour
+        int i = 0;
+        double bestSoFar = this.startFromGreedyTour(bestAnt, greedyAnt);
+
+        try {
+            while (i < this.numIterations) {
+
+                // have each ant construct a tour and improve it, depending on the local search
+                this.constructTours(antList, 0, this.withLocalSearch(Ant::makeElitistProbTour));
+                this.improveIterationBest(antList, 0);
+
+                int numRanked = selectBestAnts(antList, rankedAnts);
+
+                if (rankedAnts[0].getTotalCost() < bestSoFar) {
+                    bestAnt.copyTour(rankedAnts[0]);
+                    bestSoFar = this.improveGlobalBest(bestAnt);
+                    this.notifyBestImproved(bestAnt, i);
+                }
+
+                // the time limit or the target was reached while the ants were building tours,
+                // the best tour so far includes the ants that did build one
+                if (this.isStopped()) {
+                    break;
+                }
+
+                // the ranked ants and the best ant so far deposit, in one pass with evaporation
+                this.env.rankBasedGlobalUpdate(rankedAnts, numRanked, bestAnt);
+
+                this.notifyIterationCompleted(i, bestSoFar);
+                i++;
+
+                // take over the best tour of the other colonies, if there are any and it is shorter
+                bestSoFar = this.exchangeBestTour(bestAnt, bestSoFar, i);
+
+                if (i % 10 == 0) {
+                    bests.add(bestSoFar);
+                }
+
+                if (this.shouldStop(i, bestSoFar)) {
+                    break;
+                }
+            }
+        } finally {
+            this.shutdown();
+        }
+        return bests;
+    }
+
+    /**
+     * Partial selection of the best ants of the iteration: fills rankedAnts with
+     * the rankedAnts.length ants with the shortest tours, best first, using
+     * insertion into the (short) sorted buffer.
+     * 
+     * @param antList    The ants of the Environment.
+     * @param rankedAnts The buffer the best ants are written to.
+     * @return The number of ants written to rankedAnts.
+     */
+    private static int selectBestAnts(List<Ant> antList, Ant[] rankedAnts) {
+        int found = 0;
+        for (int j = 0; j < antList.size(); j++) {
+            Ant ant = antList.get(j);
+            double tourCost = ant.getTotalCost();
+            if (found == rankedAnts.length && tourCost >= rankedAnts[found - 1].getTotalCost()) {
+                continue;
+            }
+            int slot = found < rankedAnts.length ? found++ : rankedAnts.length - 1;
+            while (slot > 0 && rankedAnts[slot - 1].getTotalCost() > tourCost) {
+                rankedAnts[slot] = rankedAnts[slot - 1];
+                slot--;
+            }
+            rankedAnts[slot] = ant;
+        }
+        return found;
+    }
+}
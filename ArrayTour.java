@@ -0,0 +1,334 @@
+/**
+ * A tour in array form together with the position of every city in the array,
+ * so the neighbours of a city are found in O(1), and the cost of the tour.
+ * Moves are carried out as path reversals, always reversing the shorter of the
+ * two paths that give the same cycle, so a move costs O(min(k, n - k)) for a
+ * path of k cities. The cost is kept up to date from the few edges a move
+ * changes, and the *Delta methods give the change in cost of a move in O(1)
+ * without making it.
+ * 
+ * The tour array given to load is worked on in place (it is not copied).
+ */
+public class ArrayTour {
+
+    private Environment world;
+    private int[] tour;
+    private int[] positions;
+    private double cost;
+
+    /**
+     * Creates an ArrayTour able to hold tours of the Environment's cities.
+     * 
+     * @param world The Environment the tours belong to.
+     */
+    public ArrayTour(Environment world) {
+        this.world = world;
+        this.positions = new int[world.getNumCities()];
+    }
+
+    /**
+     * Starts working on a tour, computing its cost.
+     * 
+     * @param tour The tour, i.e. a permutation of the city ids. It is modified in
+     *             place by the moves.
+     */
+    public void load(int[] tour) {
+        double cost = 0.0;
+        for (int i = 0; i < tour.length; i++) {
+            cost += this.world.getDistance(tour[i], tour[i + 1 == tour.length ? 0 : i + 1]);
+        }
+        load(tour, cost);
+    }
+
+    /**
+     * Starts working on a tour whose cost is already known.
+     * 
+     * @param tour The tour, i.e. a permutation of the city ids. It is modified in
+     *             place by the moves.
+     * @param cost The cost of the tour.
+     */
+    public void load(int[] tour, double cost) {
+        this.tour = tour;
+        this.cost = cost;
+        for (int i = 0; i < tour.length; i++) {
+            this.positions[tour[i]] = i;
+        }
+    }
+
+    /**
+     * Makes this tour a copy of another one, copying its cost rather than summing
+     * the edges again. The other tour's array is copied into this tour's own
+     * array.
+     * 
+     * @param other The tour to copy.
+     */
+    public void copyFrom(ArrayTour other) {
+        if (this.tour == null || this.tour == other.tour) {
+            this.tour = new int[other.tour.length];
+        }
+        System.arraycopy(other.tour, 0, this.tour, 0, this.tour.length);
+        System.arraycopy(other.positions, 0, this.positions, 0, this.positions.length);
+        this.cost = other.cost;
+    }
+
+    /**
+     * Getter for the cost of the tour.
+     * 
+     * @return The total length of the tour.
+     */
+    public double getCost() {
+        return this.cost;
+    }
+
+    /**
+     * Getter for the number of cities.
+     * 
+     * @return The number of cities in the tour.
+     */
+    public int getNumCities() {
+        return this.positions.length;
+    }
+
+    /**
+     * Getter for the tour array.
+     * 
+     * @return The tour array.
+     */
+    public int[] getTour() {
+        return this.tour;
+    }
+
+    /**
+     * Get the position of a city in the tour array.
+     * 
+     * @param city The id of the city.
+     * @return The index of the city in the tour array.
+     */
+    public int getPosition(int city) {
+        return this.positions[city];
+    }
+
+    /**
+     * Get the city that follows a city in the tour.
+     * 
+     * @param city The id of the city.
+     * @return The id of its successor.
+     */
+    public int next(int city) {
+        int position = this.positions[city] + 1;
+        return this.tour[position == this.tour.length ? 0 : position];
+    }
+
+    /**
+     * Get the city that precedes a city in the tour.
+     * 
+     * @param city The id of the city.
+     * @return The id of its predecessor.
+     */
+    public int previous(int city) {
+        int position = this.positions[city];
+        return this.tour[position == 0 ? this.tour.length - 1 : position - 1];
+    }
+
+    /**
+     * Checks whether a city is one of the length cities starting at first (going
+     * forward).
+     * 
+     * @param city   The id of the city.
+     * @param first  The id of the first city of the segment.
+     * @param length The number of cities in the segment.
+     * @return True if the city is in the segment.
+     */
+    public boolean inSegment(int city, int first, int length) {
+        int offset = this.positions[city] - this.positions[first];
+        if (offset < 0) {
+            offset += this.tour.length;
+        }
+        return offset < length;
+    }
+
+    /**
+     * Get the change in cost of twoOptMove(a, b, c, d), without making the move.
+     * 
+     * @param a The id of the first city of the first edge.
+     * @param b The id of the second city of the first edge.
+     * @param c The id of the first city of the second edge.
+     * @param d The id of the second city of the second edge.
+     * @return The change in cost (negative if the tour gets shorter).
+     */
+    public double twoOptDelta(int a, int b, int c, int d) {
+        return this.world.getDistance(a, c) + this.world.getDistance(b, d) - this.world.getDistance(a, b)
+                - this.world.getDistance(c, d);
+    }
+
+    /**
+     * Get the change in cost of swap(city1, city2), without making the move.
+     * 
+     * @param city1 The id of the first city.
+     * @param city2 The id of the second city.
+     * @return The change in cost (negative if the tour gets shorter).
+     */
+    public double swapDelta(int city1, int city2) {
+        if (city1 == city2) {
+            return 0.0;
+        }
+        if (next(city2) == city1) {
+            int swap = city1;
+            city1 = city2;
+            city2 = swap;
+        }
+        int p1 = previous(city1);
+        int n2 = next(city2);
+        if (next(city1) == city2) {
+            if (n2 == city1) {
+                // a tour of two cities
+                return 0.0;
+            }
+            // p1 city1 city2 n2 becomes p1 city2 city1 n2
+            return this.world.getDistance(p1, city2) + this.world.getDistance(city1, n2)
+                    - this.world.getDistance(p1, city1) - this.world.getDistance(city2, n2);
+        }
+        int n1 = next(city1);
+        int p2 = previous(city2);
+        return this.world.getDistance(p1, city2) + this.world.getDistance(city2, n1)
+                + this.world.getDistance(p2, city1) + this.world.getDistance(city1, n2)
+                - this.world.getDistance(p1, city1) - this.world.getDistance(city1, n1)
+                - this.world.getDistance(p2, city2) - this.world.getDistance(city2, n2);
+    }
+
+    /**
+     * Swaps the positions of two cities in the tour.
+     * 
+     * @param city1 The id of the first city.
+     * @param city2 The id of the second city.
+     */
+    public void swap(int city1, int city2) {
+        this.cost += swapDelta(city1, city2);
+        int position1 = this.positions[city1];
+        int position2 = this.positions[city2];
+        this.tour[position1] = city2;
+        this.positions[city2] = position1;
+        this.tour[position2] = city1;
+        this.positions[city1] = position2;
+    }
+
+    /**
+     * Get the change in cost of insert(city, x), without making the move.
+     * 
+     * @param city The id of the city to move.
+     * @param x    The id of the city it is to follow.
+     * @return The change in cost (negative if the tour gets shorter).
+     */
+    public double insertDelta(int city, int x) {
+        int p = previous(city);
+        int nx = next(city);
+        if (x == city || x == p) {
+            return 0.0;
+        }
+        int y = next(x);
+        return this.world.getDistance(p, nx) + this.world.getDistance(x, city) + this.world.getDistance(city, y)
+                - this.world.getDistance(p, city) - this.world.getDistance(city, nx) - this.world.getDistance(x, y);
+    }
+
+    /**
+     * Moves a city to just after the city x (in the forward direction).
+     * 
+     * @param city The id of the city to move.
+     * @param x    The id of the city it is to follow.
+     */
+    public void insert(int city, int x) {
+        int p = previous(city);
+        if (x == city || x == p) {
+            return;
+        }
+        moveSegment(p, city, city, next(city), x, next(x), false);
+    }
+
+    /**
+     * Replaces the tour edges {a, b} and {c, d} by {a, c} and {b, d}, where b is
+     * a's and d is c's neighbour in the same direction.
+     * 
+     * @param a The id of the first city of the first edge.
+     * @param b The id of the second city of the first edge.
+     * @param c The id of the first city of the second edge.
+     * @param d The id of the second city of the second edge.
+     */
+    public void twoOptMove(int a, int b, int c, int d) {
+        if (next(a) == b) {
+            reversePath(b, c);
+        } else {
+            reversePath(c, b);
+        }
+    }
+
+    /**
+     * Moves the segment s1..s2 (with p before and nx after it) between x and y,
+     * where y follows x, as a sequence of 2-opt moves. The segment ends up
+     * reversed (x s2 .. s1 y) unless keepOrientation is set.
+     * 
+     * @param p               The city before the segment.
+     * @param s1              The first city of the segment.
+     * @param s2              The last city of the segment.
+     * @param nx              The city after the segment.
+     * @param x               The city the segment is inserted after.
+     * @param y               The city the segment is inserted before.
+     * @param keepOrientation Whether s1 should end up next to x.
+     */
+    public void moveSegment(int p, int s1, int s2, int nx, int x, int y, boolean keepOrientation) {
+        // p x ... nx s2 .. s1 y
+        twoOptMove(p, s1, x, y);
+        if (x != nx) {
+            // p nx ... x s2 .. s1 y
+            twoOptMove(p, x, nx, s2);
+        }
+        if (keepOrientation) {
+            // x s1 .. s2 y
+            twoOptMove(x, s2, s1, y);
+        }
+    }
+
+    /**
+     * Reverses the path that goes forward from city from to city to. If the path
+     * is longer than half the tour, the rest of the tour is reversed instead,
+     * which gives the same cycle. The cost changes by the two edges at the ends of
+     * the path.
+     * 
+     * @param from The id of the first city of the path.
+     * @param to   The id of the last city of the path.
+     */
+    public void reversePath(int from, int to) {
+        int before = previous(from);
+        int after = next(to);
+        if (before != to) {
+            this.cost += this.world.getDistance(before, to) + this.world.getDistance(from, after)
+                    - this.world.getDistance(before, from) - this.world.getDistance(to, after);
+        }
+
+        int n = this.tour.length;
+        int i = this.positions[from];
+        int j = this.positions[to];
+        int length = j - i;
+        if (length < 0) {
+            length += n;
+        }
+        length++;
+
+        if (2 * length > n) {
+            int newI = j + 1 == n ? 0 : j + 1;
+            j = i == 0 ? n - 1 : i - 1;
+            i = newI;
+            length = n - length;
+        }
+
+        for (int swaps = length / 2; swaps > 0; swaps--) {
+            int cityI = this.tour[i];
+            int cityJ = this.tour[j];
+            this.tour[i] = cityJ;
+            this.positions[cityJ] = i;
+            this.tour[j] = cityI;
+            this.positions[cityI] = j;
+            i = i + 1 == n ? 0 : i + 1;
+            j = j == 0 ? n - 1 : j - 1;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class BenchmarkSuite {
+
+	private static String[] instances = { "ulysses22.tsp", "st70.tsp", "a280.tsp", "d2103.tsp", "pcb3038.tsp",
+			"rl5915.tsp" };
+
+	private static long warmupMillis = 500;
+	private static long measureMillis = 2000;
+
+	private static int numAnts = 30;
+	private static double alpha = 1;
+	private static double beta = 5;
+	private static double rho = 0.1;
+	private static double epsilon = 0.1;
+	private static double qNot = 0.9;
+	private static int candidateListSize = 20;
+	private static long seed = 42;
+
+	private Environment env;
+	private List<City> cities;
+	private Ant ant;
+	private UnvisitedCities unvisited;
+	private double[] probabilities;
+	private SplittableRandom rand;
+	private int cityId;
+
+	/**
+	 * Sets up an Environment (distances, candidate lists, pheromones and ants) for
+	 * the given problem, the same way optimize does, so that the individual steps
+	 * of the algorithms can be timed in isolation.
+	 *
+	 * @param filename The problem to benchmark.
+	 */
+	public BenchmarkSuite(String filename) {
+		this.cities = TestingSuite.getCityList(filename);
+		int numCities = this.cities.size();
+
+		this.env = new Environment(numCities, numAnts, alpha, beta, rho, numAnts, epsilon, 0.1, qNot);
+		this.env.setCandidateListSize(candidateListSize);
+		this.env.setElitismFactor();
+		this.env.calculateDistances(this.cities);
+		this.env.buildCandidateLists();
+		this.env.setInitialPheromones(new Ant(-1, this.env).calculateInitialPhermone());
+		this.env.setAntList(new SplittableRandom(seed));
+
+		this.rand = new SplittableRandom(seed);
+		this.ant = this.env.getAntList().get(0);
+		this.ant.makeACSProbTour();
+		this.probabilities = new double[numCities];
+
+		// a half finished tour for the next city benchmarks
+		this.unvisited = new UnvisitedCities(numCities);
+		for (int i = 0; i < numCities / 2; i++) {
+			this.unvisited.visit(this.rand.nextInt(numCities));
+		}
+	}
+
+	/**
+	 * Picks the city the next city benchmarks start from, cycling through the
+	 * unvisited ones.
+	 *
+	 * @return The id of a city.
+	 */
+	private int nextCityId() {
+		this.cityId = (this.cityId + 1) % this.unvisited.size();
+		return this.unvisited.get(this.cityId);
+	}
+
+	/**
+	 * Runs an operation for warmupMillis, then for measureMillis, and prints the
+	 * throughput, the time per operation, the allocation rate (bytes allocated by
+	 * the benchmark thread) and the garbage collections that happened while
+	 * measuring.
+	 *
+	 * @param problem   The name of the problem.
+	 * @param name      The name of the operation.
+	 * @param operation The operation to time.
+	 */
+	public static void measure(String problem, String name, Runnable operation) {
+		measure(problem, name, null, operation);
+	}
+
+	/**
+	 * Same as measure(problem, name, operation), but runs setup (untimed) before
+	 * the warmup and again before measuring. The pheromone update benchmarks use
+	 * it to start from freshly initialized pheromones, since thousands of
+	 * evaporations in a row would otherwise drive the pheromones into the slow
+	 * subnormal range and make the numbers depend on the warmup length.
+	 *
+	 * @param problem   The name of the problem.
+	 * @param name      The name of the operation.
+	 * @param setup     Run before warming up and before measuring, may be null.
+	 * @param operation The operation to time.
+	 */
+	public static void measure(String problem, String name, Runnable setup, Runnable operation) {
+		if (setup != null) {
+			setup.run();
+		}
+		long warmupEnd = System.nanoTime() + warmupMillis * 1000000L;
+		while (System.nanoTime() < warmupEnd) {
+			operation.run();
+		}
+		if (setup != null) {
+			setup.run();
+		}
+
+		long gcCountBefore = gcCount();
+		long gcMillisBefore = gcMillis();
+		long allocatedBefore = allocatedBytes();
+		long start = System.nanoTime();
+		long end = start + measureMillis * 1000000L;
+		long ops = 0;
+		long now = start;
+		while (now < end) {
+			operation.run();
+			ops++;
+			now = System.nanoTime();
+		}
+		long elapsed = now - start;
+		long allocated = allocatedBytes() - allocatedBefore;
+
+		double opsPerSecond = ops * 1e9 / elapsed;
+		double nanosPerOp = (double) elapsed / ops;
+		String allocation = allocatedBefore < 0 ? "n/a"
+				: String.format("%.1f B/op, %.1f MB/s", (double) allocated / ops, allocated * 1e3 / elapsed);
+
+		System.out.println(String.format("%-12s %-30s %14.2f ops/s %16.1f ns/op   %s   gc: %d (%d ms)", problem, name,
+				opsPerSecond, nanosPerOp, allocation, gcCount() - gcCountBefore, gcMillis() - gcMillisBefore));
+	}
+
+	// bytes allocated so far by the current thread, -1 if the JVM cannot tell
+	private static long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean hotspotThreads = (com.sun.management.ThreadMXBean) threads;
+			return hotspotThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long gcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0, gc.getCollectionTime());
+		}
+		return millis;
+	}
+
+	/**
+	 * Benchmarks every step of the algorithms on one problem.
+	 *
+	 * @param filename The problem to benchmark.
+	 */
+	public static void runProblem(String filename) {
+		final BenchmarkSuite bs = new BenchmarkSuite(filename);
+		final Environment env = bs.env;
+		final Ant ant = bs.ant;
+
+		measure(filename, "calculateDistances", () -> env.calculateDistances(bs.cities));
+		measure(filename, "getNextCityGreedy", () -> env.getNextCityGreedy(bs.nextCityId(), bs.unvisited));
+		measure(filename, "getNextCityProb",
+				() -> env.getNextCityProb(bs.nextCityId(), bs.unvisited, bs.probabilities, bs.rand));
+		final double tauNot = new Ant(-1, env).calculateInitialPhermone();
+		Runnable resetPheromones = () -> env.setInitialPheromones(tauNot);
+		measure(filename, "antColonySystemGlobalUpdate", resetPheromones,
+				() -> env.antColonySystemGlobalUpdate(ant));
+		measure(filename, "elitistGlobalPheromoneUpdate", resetPheromones,
+				() -> env.elitistGlobalPheromoneUpdate(ant));
+		final Ant[] rankedAnts = env.getAntList().subList(0, 5).toArray(new Ant[0]);
+		measure(filename, "rankBasedGlobalUpdate", resetPheromones,
+				() -> env.rankBasedGlobalUpdate(rankedAnts, rankedAnts.length, ant));
+		measure(filename, "maxMinGlobalUpdate", resetPheromones,
+				() -> env.maxMinGlobalUpdate(ant, tauNot / (2.0 * env.getNumCities()), tauNot));
+		measure(filename, "makeACSProbTour", () -> ant.makeACSProbTour());
+		measure(filename, "makeElitistProbTour", () -> ant.makeElitistProbTour());
+	}
+
+	public static void main(String args[]) {
+		String[] problems = args.length > 0 ? args : instances;
+		for (String problem : problems) {
+			runProblem(problem);
+		}
+	}
+}
@@ -0,0 +1,143 @@
+import java.util.Arrays;
+
+/**
+ * PheromoneStore that only keeps a value for the candidate list edges of each
+ * city; every other edge shares one default value. Memory is O(n * k) instead of
+ * O(n^2).
+ * 
+ * Evaporation is lazy: the stored values are scaled by a single global decay
+ * multiplier, so evaporating every edge is O(1) and an update only pays for the
+ * edges it deposits on. Deposits and sets on edges that are not candidate edges
+ * are dropped, so those edges always hold the (evaporated) default.
+ */
+public class CandidatePheromoneStore implements PheromoneStore {
+
+    // below this the decay multiplier is folded back into the stored values
+    private static final double MIN_DECAY = 1e-100;
+
+    private int[][] candidateLists;
+    private double[][] values; // values[i][slot] * decay is the actual pheromone
+    private double defaultValue;
+    private double decay;
+
+    /**
+     * Creates the store for the given candidate lists.
+     * 
+     * @param candidateLists The candidate list of every city.
+     */
+    public CandidatePheromoneStore(int[][] candidateLists) {
+        this.candidateLists = candidateLists;
+        this.values = new double[candidateLists.length][];
+        for (int i = 0; i < candidateLists.length; i++) {
+            this.values[i] = new double[candidateLists[i].length];
+        }
+        this.decay = 1.0;
+    }
+
+    public double get(int city1, int city2) {
+        int slot = findSlot(city1, city2);
+        if (slot != -1) {
+            return this.values[city1][slot] * this.decay;
+        }
+        slot = findSlot(city2, city1);
+        if (slot != -1) {
+            return this.values[city2][slot] * this.decay;
+        }
+        return this.defaultValue * this.decay;
+    }
+
+    public double getCandidate(int cityId, int slot) {
+        return this.values[cityId][slot] * this.decay;
+    }
+
+    public void set(int city1, int city2, double value) {
+        double stored = value / this.decay;
+        int slot = findSlot(city1, city2);
+        if (slot != -1) {
+            this.values[city1][slot] = stored;
+        }
+        slot = findSlot(city2, city1);
+        if (slot != -1) {
+            this.values[city2][slot] = stored;
+        }
+    }
+
+    public void deposit(int city1, int city2, double amount) {
+        set(city1, city2, get(city1, city2) + amount);
+    }
+
+    public void evaporate(double factor) {
+        this.decay *= factor;
+        if (this.decay < MIN_DECAY) {
+            for (int i = 0; i < this.values.length; i++) {
+                double[] row = this.values[i];
+                for (int slot = 0; slot < row.length; slot++) {
+                    row[slot] *= this.decay;
+                }
+            }
+            this.defaultValue *= this.decay;
+            this.decay = 1.0;
+        }
+    }
+
+    public void fill(double value) {
+        for (int i = 0; i < this.values.length; i++) {
+            Arrays.fill(this.values[i], value);
+        }
+        this.defaultValue = value;
+        this.decay = 1.0;
+    }
+
+    public void clamp(double min, double max) {
+        // compare in stored units, so only the values out of range are touched
+        double storedMin = min / this.decay;
+        double storedMax = max / this.decay;
+        for (int i = 0; i < this.values.length; i++) {
+            double[] row = this.values[i];
+            for (int slot = 0; slot < row.length; slot++) {
+                if (row[slot] < storedMin) {
+                    row[slot] = storedMin;
+                } else if (row[slot] > storedMax) {
+                    row[slot] = storedMax;
+                }
+            }
+        }
+        this.defaultValue = Math.min(Math.max(this.defaultValue, storedMin), storedMax);
+    }
+
+    /**
+     * Adds the pheromones of another store built on the same candidate lists to
+     * this one, edge by edge. Only the candidate edges are added, so this costs
+     * O(n * k).
+     * 
+     * @param other The store whose pheromones are added.
+     */
+    public void addAll(CandidatePheromoneStore other) {
+        double ratio = other.decay / this.decay;
+        for (int i = 0; i < this.values.length; i++) {
+            double[] row = this.values[i];
+            double[] otherRow = other.values[i];
+            for (int slot = 0; slot < row.length; slot++) {
+                row[slot] += otherRow[slot] * ratio;
+            }
+        }
+    }
+
+    /**
+     * Looks up the position of a city in another city's candidate list.
+     * 
+     * @param cityId    The id of the city whose candidate list is searched.
+     * @param candidate The id of the city we are looking for.
+     * @return The slot of candidate in the candidate list of cityId, or -1 if it
+     *         is not a candidate.
+     */
+    private int findSlot(int cityId, int candidate) {
+        int[] candidates = this.candidateLists[cityId];
+        for (int slot = 0; slot < candidates.length; slot++) {
+            if (candidates[slot] == candidate) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,13 @@
+/**
+ * OptimizationListener that prints a line to stdout after every iteration, as
+ * the solvers used to do themselves.
+ */
+public class ConsoleListener implements OptimizationListener {
+
+    public void bestImproved(int[] tour, double cost, int iteration, long elapsedNanos) {
+    }
+
+    public void iterationCompleted(int iteration, double bestCost, long elapsedNanos) {
+        System.out.println("************** COMPLETED the " + iteration + "iteration ... " + bestCost);
+    }
+}
@@ -0,0 +1,43 @@
+import java.util.List;
+
+/**
+ * DistanceProvider that stores nothing but the city coordinates and computes
+ * each distance on demand. Needs O(n) memory, so it works for instances far too
+ * large for a distance matrix (e.g. pla85900).
+ */
+public class CoordinateDistanceProvider implements DistanceProvider {
+
+    private double[] xCoords;
+    private double[] yCoords;
+    private EdgeWeightType edgeWeightType;
+
+    /**
+     * Copies the coordinates of the cities into primitive arrays.
+     * 
+     * @param cityList       A list object holding all the City objects.
+     * @param edgeWeightType How the distance between two cities is computed.
+     */
+    public CoordinateDistanceProvider(List<City> cityList, EdgeWeightType edgeWeightType) {
+        int numCities = cityList.size();
+        this.xCoords = new double[numCities];
+        this.yCoords = new double[numCities];
+        this.edgeWeightType = edgeWeightType;
+
+        for (int i = 0; i < numCities; i++) {
+            this.xCoords[i] = cityList.get(i).getXCoord();
+            this.yCoords[i] = cityList.get(i).getYCoord();
+        }
+    }
+
+    public double getDistance(int city1, int city2) {
+        if (city1 == city2) {
+            return 0.0;
+        }
+        return this.edgeWeightType.distance(this.xCoords[city1], this.yCoords[city1], this.xCoords[city2],
+                this.yCoords[city2]);
+    }
+
+    public int getNumCities() {
+        return this.xCoords.length;
+    }
+}
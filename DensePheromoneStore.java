@@ -0,0 +1,80 @@
+import java.util.Arrays;
+
+/**
+ * PheromoneStore backed by a dense n x n adjacency matrix.
+ */
+public class DensePheromoneStore implements PheromoneStore {
+
+    private double[][] pheromones;
+    private int[][] candidateLists;
+
+    /**
+     * Allocates the pheromone adjacency matrix.
+     * 
+     * @param numCities      The number of cities in the problem.
+     * @param candidateLists The candidate list of every city (used by
+     *                       getCandidate), or null if there are none.
+     */
+    public DensePheromoneStore(int numCities, int[][] candidateLists) {
+        this.pheromones = new double[numCities][numCities];
+        this.candidateLists = candidateLists;
+    }
+
+    public double get(int city1, int city2) {
+        return this.pheromones[city1][city2];
+    }
+
+    public double getCandidate(int cityId, int slot) {
+        return this.pheromones[cityId][this.candidateLists[cityId][slot]];
+    }
+
+    public void set(int city1, int city2, double value) {
+        this.pheromones[city1][city2] = value;
+        this.pheromones[city2][city1] = value;
+    }
+
+    public void deposit(int city1, int city2, double amount) {
+        this.pheromones[city1][city2] += amount;
+        if (city1 != city2) {
+            this.pheromones[city2][city1] += amount;
+        }
+    }
+
+    public void evaporate(double factor) {
+        for (int i = 0; i < this.pheromones.length; i++) {
+            double[] row = this.pheromones[i];
+            for (int j = 0; j < row.length; j++) {
+                row[j] *= factor;
+            }
+        }
+    }
+
+    public void fill(double value) {
+        for (int i = 0; i < this.pheromones.length; i++) {
+            Arrays.fill(this.pheromones[i], value);
+        }
+    }
+
+    public void clamp(double min, double max) {
+        for (int i = 0; i < this.pheromones.length; i++) {
+            double[] row = this.pheromones[i];
+            for (int j = 0; j < row.length; j++) {
+                if (row[j] < min) {
+                    row[j] = min;
+                } else if (row[j] > max) {
+                    row[j] = max;
+                }
+            }
+        }
+    }
+
+    /**
+     * Getter for the underlying adjacency matrix. Used by the update rules that
+     * sweep over every edge anyway.
+     * 
+     * @return The pheromone adjacency matrix.
+     */
+    public double[][] getMatrix() {
+        return this.pheromones;
+    }
+}
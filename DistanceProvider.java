@@ -0,0 +1,24 @@
+/**
+ * Source of the distances between cities used by an Environment. Implementations
+ * either store the distances (MatrixDistanceProvider) or compute them on demand
+ * from the city coordinates (CoordinateDistanceProvider), which keeps the memory
+ * footprint linear in the number of cities.
+ */
+public interface DistanceProvider {
+
+    /**
+     * Get the distance between two cities.
+     * 
+     * @param city1 The id of city1.
+     * @param city2 The id of city2.
+     * @return The distance between city1 and city2.
+     */
+    double getDistance(int city1, int city2);
+
+    /**
+     * Getter for the number of cities the provider knows about.
+     * 
+     * @return The number of cities.
+     */
+    int getNumCities();
+}
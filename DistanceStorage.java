@@ -0,0 +1,28 @@
+/**
+ * How an Environment keeps the distances between cities around.
+ */
+public enum DistanceStorage {
+
+    /**
+     * Dense n x n matrix of doubles. Fastest lookups, but needs 8 * n^2 bytes.
+     */
+    MATRIX,
+
+    /**
+     * Each distance stored once in a packed triangle of chars, ints or floats
+     * (see TriangularDistanceProvider). Needs 2 to 4 bytes per pair of cities.
+     */
+    COMPACT,
+
+    /**
+     * No storage at all: every distance is computed from the coordinates when it
+     * is asked for.
+     */
+    ON_THE_FLY,
+
+    /**
+     * Like ON_THE_FLY, but the distances to the candidate list cities are
+     * computed once and cached, so the memory needed is proportional to n * k.
+     */
+    CANDIDATE_CACHE
+}
@@ -0,0 +1,110 @@
+/**
+ * The ways of computing the distance between two cities from their coordinates.
+ * Apart from EUCLIDEAN, which is the plain (unrounded) Euclidean distance we have
+ * always used, these follow the EDGE_WEIGHT_TYPE definitions of TSPLIB so that
+ * tour costs are comparable with the published optima.
+ */
+public enum EdgeWeightType {
+
+    /**
+     * Plain Euclidean distance without any rounding.
+     */
+    EUCLIDEAN {
+        public double distance(double x1, double y1, double x2, double y2) {
+            double xDiff = x1 - x2;
+            double yDiff = y1 - y2;
+            return Math.sqrt(xDiff * xDiff + yDiff * yDiff);
+        }
+    },
+
+    /**
+     * Euclidean distance rounded to the nearest integer.
+     */
+    EUC_2D {
+        public double distance(double x1, double y1, double x2, double y2) {
+            return (int) (EUCLIDEAN.distance(x1, y1, x2, y2) + 0.5);
+        }
+    },
+
+    /**
+     * Euclidean distance rounded up to the next integer.
+     */
+    CEIL_2D {
+        public double distance(double x1, double y1, double x2, double y2) {
+            return Math.ceil(EUCLIDEAN.distance(x1, y1, x2, y2));
+        }
+    },
+
+    /**
+     * Pseudo-Euclidean distance used by the att* instances.
+     */
+    ATT {
+        public double distance(double x1, double y1, double x2, double y2) {
+            double xDiff = x1 - x2;
+            double yDiff = y1 - y2;
+            double r = Math.sqrt((xDiff * xDiff + yDiff * yDiff) / 10.0);
+            int t = (int) (r + 0.5);
+            return t < r ? t + 1 : t;
+        }
+    },
+
+    /**
+     * Geographical distance, where x is the latitude and y the longitude given in
+     * DDD.MM (degrees and minutes) format.
+     */
+    GEO {
+        private static final double PI = 3.141592;
+        private static final double RRR = 6378.388;
+
+        public double distance(double x1, double y1, double x2, double y2) {
+            double latitude1 = toRadians(x1);
+            double longitude1 = toRadians(y1);
+            double latitude2 = toRadians(x2);
+            double longitude2 = toRadians(y2);
+
+            double q1 = Math.cos(longitude1 - longitude2);
+            double q2 = Math.cos(latitude1 - latitude2);
+            double q3 = Math.cos(latitude1 + latitude2);
+            return (int) (RRR * Math.acos(0.5 * ((1.0 + q1) * q2 - (1.0 - q1) * q3)) + 1.0);
+        }
+
+        private double toRadians(double coordinate) {
+            int degrees = (int) coordinate;
+            double minutes = coordinate - degrees;
+            return PI * (degrees + 5.0 * minutes / 3.0) / 180.0;
+        }
+    };
+
+    /**
+     * Computes the distance between two points.
+     * 
+     * @param x1 The x coordinate of the first point.
+     * @param y1 The y coordinate of the first point.
+     * @param x2 The x coordinate of the second point.
+     * @param y2 The y coordinate of the second point.
+     * @return The distance between the two points.
+     */
+    public abstract double distance(double x1, double y1, double x2, double y2);
+
+    /**
+     * Whether the distance never decreases as the plain Euclidean distance grows,
+     * so that the nearest cities can be found with a spatial index over the
+     * coordinates (see KdTree). True for all types but GEO.
+     * 
+     * @return True if the distance follows the order of the Euclidean distance.
+     */
+    public boolean preservesEuclideanOrder() {
+        return this != GEO;
+    }
+
+    /**
+     * Looks up the type for a TSPLIB EDGE_WEIGHT_TYPE value.
+     * 
+     * @param name The value of the EDGE_WEIGHT_TYPE keyword, e.g. "EUC_2D".
+     * @return The matching type.
+     * @throws IllegalArgumentException If the type is not supported.
+     */
+    public static EdgeWeightType fromTsplib(String name) {
+        return EdgeWeightType.valueOf(name.trim());
+    }
+}
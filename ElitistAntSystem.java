@@ -1,11 +1,7 @@
 import java.util.List;
 import java.util.ArrayList;
 
-public class ElitistAntSystem {
-
-    private Environment env;
-    private List<City> cityList = new ArrayList<City>();
-    private int numIterations;
+public class ElitistAntSystem extends AntColonyOptimizer {
 
     /**
      * Constructor for the instance of the ElitistAntSystem algorithm. Will run optimize to optimize the algorithm.
@@ -15,9 +11,7 @@ public class ElitistAntSystem {
      * @param numIterations The number of iterations we would like the algorithm to run for.
      */
     public ElitistAntSystem(Environment env, List<City> cityList, int numIterations) {
-        this.env = env;
-        this.cityList = cityList;
-        this.numIterations = numIterations;
+        super(env, cityList, numIterations);
     }
 
     /**
@@ -26,61 +20,96 @@ public class ElitistAntSystem {
      *         tests).
      */
     public List<Double> optimize() {
+        // start the clock of the stopping criteria, the best tour so far is copied
+        // into bestAnt's buffer
+        Ant bestAnt = this.startRun();
+
         // initialize the elitism factor
         this.env.setElitismFactor();
 
         // initialize the distances adjacency matrix
         this.env.calculateDistances(cityList);
 
-        // calculate tauNot and initialize pheromones adjacency matrix
-        Ant testAnt = new Ant(-1, this.env);
-        double tauNot = testAnt.calculateInitialPhermone();
+        // restrict tour construction to the k nearest neighbours (if enabled)
+        this.env.buildCandidateLists();
+
+        // calculate tauNot from the nearest neighbour tour
+        // and initialize the pheromones adjacency matrix
+        Ant greedyAnt = this.constructGreedyTour();
+        double tauNot = Ant.initialPheromone(greedyAnt.getTotalCost(), this.env.getNumCities());
         this.env.setInitialPheromones(tauNot);
 
         // set the environment ant list
-        this.env.setAntList();
+        this.env.setAntList(this.createRandom());
 
         List<Ant> antList = this.env.getAntList();
-        List<Ant> bestAntsList = new ArrayList<Ant>();
         List<Double> bests = new ArrayList<Double>();
 
         // initialize what we will compare everything to
         int i = 0;
-        Ant bestAnt = antList.get(0);
-        double bestSoFar = bestAnt.makeElitistProbTour();
+        double bestSoFar = this.startFromGreedyTour(bestAnt, greedyAnt);
+        antList.get(0).makeElitistProbTour();
+        if (antList.get(0).getTotalCost() < bestSoFar) {
+            bestAnt.copyTour(antList.get(0));
+            bestSoFar = bestAnt.getTotalCost();
+            this.notifyBestImproved(bestAnt, i);
+        }
 
-        while (i < this.numIterations) {
+        try {
+            while (i < this.numIterations) {
 
-            // iterate over all ants
-            for (int j = 1; j < antList.size(); j++) {
-                // for each ant, have an ant construct an elitist tour
-                double tourCost = antList.get(j).makeElitistProbTour();
+                // have each ant construct an elitist tour (the ants are independent, so this
+                // may run in parallel) and improve it, depending on the local search
+                this.constructTours(antList, 1, this.withLocalSearch(Ant::makeElitistProbTour));
+                this.improveIterationBest(antList, 1);
+                boolean newBest = false;
 
-                // udpate iteration pheromones adjacency matrix
-                this.env.addIterationPheromonesElitist(antList.get(j).getTour(), tourCost);
+                // iterate over all ants
+                for (int j = 1; j < antList.size(); j++) {
+                    double tourCost = antList.get(j).getTotalCost();
 
-                // update the bestSoFar and bestAnt
-                if (tourCost < bestSoFar) {
-                    bestSoFar = tourCost;
-                    bestAnt = antList.get(j).cloneAnt();
+                    // udpate iteration pheromones adjacency matrix
+                    this.env.addIterationPheromonesElitist(antList.get(j).getTour(), tourCost);
+
+                    // update the bestSoFar and bestAnt
+                    if (tourCost < bestSoFar) {
+                        bestSoFar = tourCost;
+                        bestAnt.copyTour(antList.get(j));
+                        newBest = true;
+                    }
                 }
-            }
-            // add the bestAnt
-            bestAntsList.add(bestAnt);
-            int listSize = bestAntsList.size();
-            Ant lastBestAnt = bestAntsList.get(listSize - 1);
 
-            // perform the elitistGlobalPheromone on the lastBestAnt found (even if it didn't change from the last time)
-            this.env.elitistGlobalPheromoneUpdate(lastBestAnt);
+                if (newBest) {
+                    bestSoFar = this.improveGlobalBest(bestAnt);
+                    this.notifyBestImproved(bestAnt, i);
+                }
+                // the time limit or the target was reached while the ants were building tours,
+                // the best tour so far includes the ants that did build one
+                if (this.isStopped()) {
+                    break;
+                }
 
-            System.out.println("************** COMPLETED the " + i + "iteration ..." + bestSoFar);
-            i++;
+                // perform the elitistGlobalPheromone on the bestAnt found (even if it didn't change from the last time)
+                this.env.elitistGlobalPheromoneUpdate(bestAnt);
 
-            if(i % 10 == 0) {
-                bests.add(bestSoFar);
-            }
+                this.notifyIterationCompleted(i, bestSoFar);
+                i++;
+
+                // take over the best tour of the other colonies, if there are any and it is shorter
+                bestSoFar = this.exchangeBestTour(bestAnt, bestSoFar, i);
+
+                if(i % 10 == 0) {
+                    bests.add(bestSoFar);
+                }
 
+                if (this.shouldStop(i, bestSoFar)) {
+                    break;
+                }
+
+            }
+        } finally {
+            this.shutdown();
         }
         return bests;
     }
-}
\ No newline at end of file
+}
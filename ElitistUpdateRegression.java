@@ -0,0 +1,140 @@
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class ElitistUpdateRegression {
+
+	private static String[] instances = { "ulysses22.tsp", "st70.tsp" };
+
+	private static int numIterations = 20;
+	private static int numAnts = 15;
+	private static double alpha = 1;
+	private static double beta = 3;
+	private static double rho = 0.1;
+	private static double eliteNum = numAnts;
+	private static long seed = 42;
+
+	/**
+	 * Reference implementation of the elitist global update as it was before it
+	 * indexed the best tour by successor: every (i, j) pair looks for the leg in
+	 * the best tour. The original String lookup also matched pairs that are not
+	 * legs (edge 1-2 inside the legs 11 -> 23), so the search here is exact; the
+	 * arithmetic is the original one.
+	 *
+	 * @param pheromones          The pheromone matrix, updated in place.
+	 * @param iterationPheromones The pheromones deposited in the iteration, reset
+	 *                            to 0.
+	 * @param bestTourSoFar       The best tour so far.
+	 * @param bestCost            Its cost.
+	 */
+	private static void referenceUpdate(double[][] pheromones, double[][] iterationPheromones, int[] bestTourSoFar,
+			double bestCost) {
+		int numCities = pheromones.length;
+		double pheromoneBoost = 1.0 / bestCost;
+
+		for (int i = 0; i < numCities; i++) {
+			for (int j = i; j < numCities; j++) {
+				double evaporatedPheromones = pheromones[i][j] * (1.0 - rho);
+				double newPheromoneAdditions = iterationPheromones[i][j];
+				iterationPheromones[i][j] = 0.0;
+				iterationPheromones[j][i] = 0.0;
+
+				if (isLeg(bestTourSoFar, i, j)) {
+					newPheromoneAdditions += pheromoneBoost * (eliteNum);
+				}
+
+				pheromones[i][j] = evaporatedPheromones + newPheromoneAdditions;
+				pheromones[j][i] = evaporatedPheromones + newPheromoneAdditions;
+			}
+		}
+	}
+
+	// whether (i, j) is a leg of the tour, in either direction, by searching the tour
+	private static boolean isLeg(int[] tour, int i, int j) {
+		for (int k = 0; k < tour.length; k++) {
+			int next = tour[k + 1 == tour.length ? 0 : k + 1];
+			if ((tour[k] == i && next == j) || (tour[k] == j && next == i)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Runs a seeded EAS colony for numIterations iterations and, after every
+	 * elitist update, compares the Environment's pheromones with those of the
+	 * reference update fed the same tours. The values have to be identical, not
+	 * just close.
+	 *
+	 * @param filename          The problem.
+	 * @param candidateListSize The candidate list size of the Environment (0 for
+	 *                          none).
+	 * @return The number of pheromone values that differ, over all iterations.
+	 */
+	public static int check(String filename, int candidateListSize) {
+		List<City> cities = TestingSuite.getCityList(filename);
+		int numCities = cities.size();
+
+		Environment env = new Environment(numCities, numAnts, alpha, beta, rho, eliteNum, 0.1, 0.1, 0.9);
+		env.setCandidateListSize(candidateListSize);
+		env.calculateDistances(cities);
+		env.buildCandidateLists();
+		env.setInitialPheromones(new Ant(-1, env).calculateInitialPhermone());
+		env.setAntList(new SplittableRandom(seed));
+
+		double[][] pheromones = new double[numCities][numCities];
+		double[][] iterationPheromones = new double[numCities][numCities];
+		for (int i = 0; i < numCities; i++) {
+			for (int j = 0; j < numCities; j++) {
+				pheromones[i][j] = env.getPheromones(i, j);
+			}
+		}
+
+		List<Ant> antList = env.getAntList();
+		Ant bestAnt = new Ant(-1, env);
+		int mismatches = 0;
+
+		for (int iteration = 0; iteration < numIterations; iteration++) {
+			for (Ant ant : antList) {
+				ant.makeElitistProbTour();
+				int[] tour = ant.getTour();
+				env.addIterationPheromonesElitist(tour, ant.getTotalCost());
+				for (int k = 0; k < tour.length; k++) {
+					int next = tour[k + 1 == tour.length ? 0 : k + 1];
+					iterationPheromones[tour[k]][next] = 1.0 / ant.getTotalCost();
+					iterationPheromones[next][tour[k]] = 1.0 / ant.getTotalCost();
+				}
+				if (ant.getTotalCost() < bestAnt.getTotalCost()) {
+					bestAnt.copyTour(ant);
+				}
+			}
+
+			env.elitistGlobalPheromoneUpdate(bestAnt);
+			referenceUpdate(pheromones, iterationPheromones, bestAnt.getTour(), bestAnt.getTotalCost());
+
+			for (int i = 0; i < numCities; i++) {
+				for (int j = 0; j < numCities; j++) {
+					if (env.getPheromones(i, j) != pheromones[i][j]) {
+						mismatches++;
+					}
+				}
+			}
+		}
+		return mismatches;
+	}
+
+	public static void main(String args[]) {
+		String[] problems = args.length > 0 ? args : instances;
+		boolean passed = true;
+		for (String problem : problems) {
+			for (int candidateListSize : new int[] { 0, 10 }) {
+				int mismatches = check(problem, candidateListSize);
+				System.out.println(String.format("%-14s candidates %2d: %s", problem, candidateListSize,
+						mismatches == 0 ? "identical" : mismatches + " pheromone values differ"));
+				passed &= mismatches == 0;
+			}
+		}
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+}
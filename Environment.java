@@ -1,6 +1,5 @@
 import java.util.Arrays;
-import java.util.Random;
-import java.util.Set;
+import java.util.SplittableRandom;
 import java.lang.Math;
 import java.util.List;
 import java.util.ArrayList;
@@ -9,9 +8,21 @@ import java.math.RoundingMode;
 
 public class Environment {
 
-	private double[][] distances;
-	private double[][] pheromones;
-	private double[][] iterationPheromones;
+	private DistanceProvider distances;
+	private DistanceStorage distanceStorage = DistanceStorage.MATRIX;
+	private EdgeWeightType edgeWeightType = EdgeWeightType.EUCLIDEAN;
+	private DistanceProvider presetDistances; // distances that came with the problem, if any
+	private int[][] presetCandidateLists; // candidate lists that came with the problem, if any
+	private boolean explicitWeights; // whether the distances do not come from the coordinates
+	private KdTree spatialIndex; // over the coordinates, if the distances follow the Euclidean order
+	private KdTree presetSpatialIndex; // shared by another Environment, if any
+	private double[][] candidateDistances; // only kept for CANDIDATE_CACHE
+	private PheromoneStore pheromones;
+	private PheromoneStore iterationPheromones; // only used by EAS, created on first use
+	private boolean sparsePheromones;
+	private int[] bestTourSuccessors; // scratch index used by the elitist update
+	private int[][] rankedTourNeighbours; // scratch index used by the rank-based update
+	private double[] rankedTourAdditions; // scratch deposits used by the rank-based update
 	private int numCities;
 	private int numAnts;
 
@@ -23,6 +34,15 @@ public class Environment {
 	private double tau; // 1 / length of greedy tour * num cities
 	private double q; // prob for choosing to use greedy or prob
 
+	private int candidateListSize; // k nearest neighbours per city, 0 disables
+	private int[][] candidateLists;
+	private int[] candidateEdges; // every candidate edge once, as pairs, created on first use by MMAS
+
+	// eta(i,j)^beta and t(i,j)^alpha * eta(i,j)^beta, laid out like the candidate
+	// lists when there are any and as full n x n matrices otherwise
+	private double[][] heuristics;
+	private double[][] choiceInfo;
+
 	private List<Ant> antList = new ArrayList<Ant>();
 
 	/**
@@ -54,9 +74,6 @@ public class Environment {
 
 		this.numAnts = numAnts;
 		this.numCities = numCities;
-		this.distances = new double[numCities][numCities];
-		this.pheromones = new double[numCities][numCities];
-		this.iterationPheromones = new double[numCities][numCities];
 		this.alpha = alpha;
 		this.beta = beta;
 		this.rho = rho;
@@ -72,41 +89,62 @@ public class Environment {
 	 **********************/
 
 	/**
-	 * Given a list of City objects, this method calculates the Euclidean distance
-	 * between two nodes and populates our adjacency matrix at (i, j) and (j, i)
-	 * because our implementation of TSP is symmetric.
+	 * Given a list of City objects, this method sets up the distances between
+	 * every pair of cities according to the edge weight type. Depending on the
+	 * distance storage, the distances are either precomputed into an adjacency
+	 * matrix or computed from the coordinates whenever they are needed.
+	 * 
+	 * If the problem came with its distances (explicit edge weights, or a distance
+	 * triangle from the InstanceCache, see setProblem) those are used instead, and
+	 * the coordinates of the cities are ignored.
 	 * 
 	 * @param cityList A list object holding all the City objects. Created when we
 	 *                 read in a particular problem.
 	 */
 	public void calculateDistances(List<City> cityList) {
+		this.candidateDistances = null;
+		if (this.presetDistances != null) {
+			this.distances = this.presetDistances;
+		} else if (this.distanceStorage == DistanceStorage.MATRIX) {
+			this.distances = new MatrixDistanceProvider(cityList, this.edgeWeightType);
+		} else if (this.distanceStorage == DistanceStorage.COMPACT) {
+			this.distances = new TriangularDistanceProvider(cityList, this.edgeWeightType);
+		} else {
+			this.distances = new CoordinateDistanceProvider(cityList, this.edgeWeightType);
+		}
 
-		for (int i = 0; i < cityList.size(); i++) {
-			City currentCity = cityList.get(i);
-			double currentX = currentCity.getXCoord();
-			double currentY = currentCity.getYCoord();
-
-			for (int j = i; j < cityList.size(); j++) {
-				City comparingCity = cityList.get(j);
-				double comparingX = comparingCity.getXCoord();
-				double comparingY = comparingCity.getYCoord();
-
-				double distance = 0.0;
-				if (j != i) {
-					double xDiffSquared = Math.pow(currentX - comparingX, 2);
-					double yDiffSquared = Math.pow(currentY - comparingY, 2);
-					double sum = xDiffSquared + yDiffSquared;
-					distance = Math.sqrt(sum);
-				}
-
-				this.distances[i][j] = distance;
-				this.distances[j][i] = distance;
+		this.spatialIndex = null;
+		if (this.presetSpatialIndex != null) {
+			this.spatialIndex = this.presetSpatialIndex;
+		} else if (!this.explicitWeights && this.edgeWeightType.preservesEuclideanOrder()) {
+			double[] xCoords = new double[cityList.size()];
+			double[] yCoords = new double[cityList.size()];
+			for (int i = 0; i < xCoords.length; i++) {
+				xCoords[i] = cityList.get(i).getXCoord();
+				yCoords[i] = cityList.get(i).getYCoord();
 			}
+			this.spatialIndex = new KdTree(xCoords, yCoords);
 		}
 	}
 
 	/**
-	 * Populates the pheromone matrix at the beginning of the problem.
+	 * Uses the given DistanceProvider instead of computing distances from a list
+	 * of cities.
+	 * 
+	 * @param distances The provider of the distances between cities.
+	 */
+	public void setDistances(DistanceProvider distances) {
+		this.distances = distances;
+		this.candidateDistances = null;
+		this.spatialIndex = null;
+	}
+
+	/**
+	 * Populates the pheromone matrix at the beginning of the problem. If sparse
+	 * pheromones are enabled and candidate lists have been built, only the
+	 * candidate edges get their own pheromone value (see CandidatePheromoneStore);
+	 * otherwise a dense adjacency matrix is used. Also precomputes the heuristic
+	 * and choice info tables used during tour construction.
 	 * 
 	 * @param pheromoneContent The pheromone amount we are depositing on each edge
 	 *                         of the graph initially. Calculated in
@@ -115,11 +153,16 @@ public class Environment {
 	 */
 	public void setInitialPheromones(double pheromoneContent) {
 		this.tau = pheromoneContent;
-		for (int i = 0; i < this.numCities; i++) {
-			for (int j = 0; j < this.numCities; j++) {
-				this.pheromones[i][j] = 1.0 * pheromoneContent;
-			}
+		if (this.sparsePheromones && this.candidateLists != null) {
+			this.pheromones = new CandidatePheromoneStore(this.candidateLists);
+		} else {
+			this.pheromones = new DensePheromoneStore(this.numCities, this.candidateLists);
 		}
+		this.pheromones.fill(1.0 * pheromoneContent);
+		this.iterationPheromones = null;
+
+		calculateHeuristics();
+		refreshChoiceInfo();
 	}
 
 	/**
@@ -128,68 +171,365 @@ public class Environment {
 	 * within an instance of an Environment object.
 	 */
 	public void setAntList() {
+		setAntList(new SplittableRandom());
+	}
+
+	/**
+	 * Same as setAntList(), but the random number generator of every ant is split
+	 * off the given one, in ant order. With a seeded generator the ants' random
+	 * streams, and therefore the whole run, are reproducible.
+	 * 
+	 * @param seeds The generator the ants' generators are derived from.
+	 */
+	public void setAntList(SplittableRandom seeds) {
+		antList.clear();
 		int i = 0;
 		Ant ant;
 		while (i < this.numAnts) {
-			ant = new Ant(i, this);
+			ant = new Ant(i, this, seeds.split());
 			antList.add(ant);
 			i++;
 		}
 	}
 
 	/**
+	 * Builds the candidate list of every city, i.e. the ids of its
+	 * candidateListSize nearest neighbours sorted by increasing distance. Tour
+	 * construction only looks at these cities and falls back to scanning every
+	 * city once all of them have been visited, which brings the cost of a tour
+	 * down from O(n^2) to roughly O(n * k).
 	 * 
-	 * @param cityId
-	 * @param visitedSet
-	 * @return
+	 * Must be called after calculateDistances. Does nothing if the candidate list
+	 * size is 0. Candidate lists that came with the problem (see setProblem) are
+	 * reused if they are long enough.
 	 */
-	public int getNextCityProb(int cityId, Set<Integer> visitedSet) {
+	public void buildCandidateLists() {
+		this.candidateEdges = null;
+		this.candidateDistances = null;
+		if (this.candidateListSize <= 0) {
+			this.candidateLists = null;
+			return;
+		}
+		int k = Math.min(this.candidateListSize, this.numCities - 1);
+		if (this.presetCandidateLists != null && this.presetCandidateLists.length == this.numCities
+				&& this.presetCandidateLists[0].length >= k) {
+			// the nearest k of a longer sorted list are the first k
+			this.candidateLists = new int[this.numCities][];
+			for (int i = 0; i < this.numCities; i++) {
+				this.candidateLists[i] = this.presetCandidateLists[i].length == k ? this.presetCandidateLists[i]
+						: Arrays.copyOf(this.presetCandidateLists[i], k);
+			}
+		} else {
+			this.candidateLists = findNearestNeighbours(this.distances, this.spatialIndex, k);
+		}
 
-		double[] probabilities = new double[this.distances.length];
-		double[] neighboringCities = this.distances[cityId];
-		double[] neighoringPheromones = this.pheromones[cityId];
+		if (this.distanceStorage == DistanceStorage.CANDIDATE_CACHE) {
+			this.candidateDistances = new double[this.numCities][k];
+			for (int i = 0; i < this.numCities; i++) {
+				for (int slot = 0; slot < k; slot++) {
+					this.candidateDistances[i][slot] = this.distances.getDistance(i, this.candidateLists[i][slot]);
+				}
+			}
+		}
+	}
 
-		double runningProbSum = 0.0;
+	/**
+	 * Finds the k nearest neighbours of every city, sorted by increasing
+	 * distance, equally distant ones by id. With a spatial index over the
+	 * coordinates this takes O(n log n) time (for a fixed k), otherwise O(n^2)
+	 * distance lookups. The index finds the nearest cities by Euclidean distance,
+	 * so when the distances are rounded, a neighbour tied with the k-th nearest
+	 * may be picked instead of it.
+	 * 
+	 * @param distances    The distances between the cities.
+	 * @param spatialIndex A KdTree over the coordinates, or null if the distances
+	 *                     do not follow the Euclidean order.
+	 * @param k            The number of neighbours per city, less than the number
+	 *                     of cities.
+	 * @return For every city, the ids of its k nearest neighbours.
+	 */
+	public static int[][] findNearestNeighbours(DistanceProvider distances, KdTree spatialIndex, int k) {
+		if (spatialIndex != null) {
+			int numCities = distances.getNumCities();
+			int[][] neighbours = new int[numCities][k];
+			double[] squaredDistances = new double[k];
+			double[] nearestDistances = new double[k];
+			for (int i = 0; i < numCities; i++) {
+				int[] nearest = neighbours[i];
+				spatialIndex.findNearest(i, k, nearest, squaredDistances);
+
+				// sort by the actual distance, which may be rounded
+				for (int slot = 0; slot < k; slot++) {
+					int city = nearest[slot];
+					double distance = distances.getDistance(i, city);
+					int position = slot;
+					while (position > 0 && (nearestDistances[position - 1] > distance
+							|| (nearestDistances[position - 1] == distance && nearest[position - 1] > city))) {
+						nearestDistances[position] = nearestDistances[position - 1];
+						nearest[position] = nearest[position - 1];
+						position--;
+					}
+					nearestDistances[position] = distance;
+					nearest[position] = city;
+				}
+			}
+			return neighbours;
+		}
 
-		for (int i = 0; i < neighboringCities.length; i++) {
+		int numCities = distances.getNumCities();
+		int[][] neighbours = new int[numCities][k];
 
-			double product = 0.0;
+		double[] nearestDistances = new double[k];
+		for (int i = 0; i < numCities; i++) {
+			int[] nearest = neighbours[i];
+			int found = 0;
 
-			if (!visitedSet.contains(i)) {
-				double cityDistance = 1.0 / neighboringCities[i];
-				double pheromoneContent = neighoringPheromones[i];
-				product = Math.pow(pheromoneContent, this.alpha) * Math.pow(cityDistance, this.beta);
+			// insertion into a sorted buffer of size k, so each row costs O(n * k) at worst
+			for (int j = 0; j < numCities; j++) {
+				if (j == i) {
+					continue;
+				}
+				double distance = distances.getDistance(i, j);
+				if (found == k && distance >= nearestDistances[k - 1]) {
+					continue;
+				}
+				int slot = found < k ? found++ : k - 1;
+				while (slot > 0 && nearestDistances[slot - 1] > distance) {
+					nearestDistances[slot] = nearestDistances[slot - 1];
+					nearest[slot] = nearest[slot - 1];
+					slot--;
+				}
+				nearestDistances[slot] = distance;
+				nearest[slot] = j;
+			}
+		}
+		return neighbours;
+	}
+
+	/**
+	 * Get the distance between a city and one of its candidates, from the
+	 * candidate cache when there is one.
+	 * 
+	 * @param cityId The id of the city.
+	 * @param slot   The position of the candidate in the candidate list of cityId.
+	 * @return The distance between cityId and its candidate.
+	 */
+	private double getCandidateDistance(int cityId, int slot) {
+		if (this.candidateDistances != null) {
+			return this.candidateDistances[cityId][slot];
+		}
+		return this.distances.getDistance(cityId, this.candidateLists[cityId][slot]);
+	}
+
+	/**
+	 * Computes eta(i,j)^beta = (1 / d(i,j))^beta once for every edge that tour
+	 * construction looks up repeatedly: the candidate edges when candidate lists
+	 * are built, every edge otherwise. Called by setInitialPheromones, i.e. after
+	 * calculateDistances and buildCandidateLists.
+	 */
+	private void calculateHeuristics() {
+		this.heuristics = new double[this.numCities][];
+		for (int i = 0; i < this.numCities; i++) {
+			if (this.candidateLists != null) {
+				int[] candidates = this.candidateLists[i];
+				this.heuristics[i] = new double[candidates.length];
+				for (int slot = 0; slot < candidates.length; slot++) {
+					this.heuristics[i][slot] = power(1.0 / getCandidateDistance(i, slot), this.beta);
+				}
+			} else {
+				this.heuristics[i] = new double[this.numCities];
+				for (int j = 0; j < this.numCities; j++) {
+					this.heuristics[i][j] = power(1.0 / this.distances.getDistance(i, j), this.beta);
+				}
+			}
+		}
+		this.choiceInfo = new double[this.numCities][];
+		for (int i = 0; i < this.numCities; i++) {
+			this.choiceInfo[i] = new double[this.heuristics[i].length];
+		}
+	}
+
+	/**
+	 * Recomputes the whole choice info table t(i,j)^alpha * eta(i,j)^beta from the
+	 * current pheromones. Used after updates that change every edge.
+	 */
+	private void refreshChoiceInfo() {
+		for (int i = 0; i < this.numCities; i++) {
+			double[] row = this.choiceInfo[i];
+			double[] heuristicRow = this.heuristics[i];
+			for (int j = 0; j < row.length; j++) {
+				double pheromoneContent = this.candidateLists != null ? this.pheromones.getCandidate(i, j)
+						: this.pheromones.get(i, j);
+				row[j] = power(pheromoneContent, this.alpha) * heuristicRow[j];
+			}
+		}
+	}
+
+	/**
+	 * Recomputes the choice info of a single edge (in both directions) after its
+	 * pheromones changed.
+	 * 
+	 * @param city1 The id of city1.
+	 * @param city2 The id of city2.
+	 */
+	private void refreshChoiceInfo(int city1, int city2) {
+		if (this.candidateLists == null) {
+			double choice = power(this.pheromones.get(city1, city2), this.alpha) * this.heuristics[city1][city2];
+			this.choiceInfo[city1][city2] = choice;
+			this.choiceInfo[city2][city1] = choice;
+			return;
+		}
+		refreshCandidateChoiceInfo(city1, city2);
+		refreshCandidateChoiceInfo(city2, city1);
+	}
+
+	/**
+	 * Recomputes the choice info of the edge (cityId, candidate) if candidate is in
+	 * the candidate list of cityId.
+	 * 
+	 * @param cityId    The id of the city.
+	 * @param candidate The id of the other end of the edge.
+	 */
+	private void refreshCandidateChoiceInfo(int cityId, int candidate) {
+		int[] candidates = this.candidateLists[cityId];
+		for (int slot = 0; slot < candidates.length; slot++) {
+			if (candidates[slot] == candidate) {
+				this.choiceInfo[cityId][slot] = power(this.pheromones.getCandidate(cityId, slot), this.alpha)
+						* this.heuristics[cityId][slot];
+				return;
 			}
-			probabilities[i] = product;
-			runningProbSum += product;
 		}
+	}
 
-		double probCounter = 0.0;
-		for (int i = 0; i < neighboringCities.length; i++) {
-			double prob = probabilities[i] / runningProbSum;
-			probCounter += prob;
-			probabilities[i] = probCounter;
+	/**
+	 * Get eta(i,j)^beta for any edge, from the heuristics table when it holds the
+	 * edge and computed otherwise (only happens in the fallback full scans when
+	 * candidate lists are built).
+	 * 
+	 * @param city1 The id of city1.
+	 * @param city2 The id of city2.
+	 * @return (1 / d(city1, city2))^beta
+	 */
+	private double getHeuristic(int city1, int city2) {
+		if (this.candidateLists == null) {
+			return this.heuristics[city1][city2];
 		}
-		return pickCityFromProbabilities(probabilities);
+		return power(1.0 / this.distances.getDistance(city1, city2), this.beta);
 	}
 
 	/**
-	 * @param double proboabilities picks a city probabilistically according to the
-	 *               array input
-	 * @return int city index
+	 * Math.pow with fast paths for the exponents we actually use (alpha = 1 and
+	 * small integer betas), which are plain multiplications.
+	 * 
+	 * @param base     The base.
+	 * @param exponent The exponent.
+	 * @return base raised to exponent.
+	 */
+	private static double power(double base, double exponent) {
+		if (exponent == 1.0) {
+			return base;
+		}
+		int integerExponent = (int) exponent;
+		if (integerExponent == exponent && integerExponent >= 0 && integerExponent <= 16) {
+			double result = 1.0;
+			for (int i = 0; i < integerExponent; i++) {
+				result *= base;
+			}
+			return result;
+		}
+		return Math.pow(base, exponent);
+	}
+
+	/**
+	 * Probabilistic next city selection (the random proportional rule). The
+	 * probability of moving from cityId to an unvisited city j is proportional to
+	 * t(i,j)^alpha * (1 / d(i,j))^beta.
+	 * 
+	 * When candidate lists are built, only the unvisited candidates of cityId are
+	 * considered; the full scan is only used once all of them have been visited.
+	 * 
+	 * The products are looked up in the choice info table, which is kept up to
+	 * date by the pheromone updates. Nothing is allocated: the running sums of the
+	 * products are written into the caller's buffer and the roulette wheel is spun with the caller's random
+	 * number generator, so every ant can use its own.
+	 * 
+	 * @param cityId        The id of the city the ant is currently at.
+	 * @param unvisited     The cities that the ant has not visited yet.
+	 * @param probabilities Scratch buffer of at least numCities entries.
+	 * @param rand          The random number generator of the ant.
+	 * @return The next city to add to the tour.
 	 */
+	public int getNextCityProb(int cityId, UnvisitedCities unvisited, double[] probabilities, SplittableRandom rand) {
+
+		double[] choices = this.choiceInfo[cityId];
+
+		if (this.candidateLists != null) {
+			int[] candidates = this.candidateLists[cityId];
+			double runningProbSum = 0.0;
+
+			for (int i = 0; i < candidates.length; i++) {
+				int candidate = candidates[i];
+				if (!unvisited.isVisited(candidate)) {
+					runningProbSum += choices[i];
+				}
+				probabilities[i] = runningProbSum;
+			}
 
-	public static int pickCityFromProbabilities(double[] probabilities) {
+			if (runningProbSum > 0.0) {
+				return candidates[pickCityFromProbabilities(probabilities, candidates.length, rand)];
+			}
+			// every candidate has been visited, fall back to the full scan below
+		}
 
-		Random randy = new Random();
-		double randDouble = randy.nextDouble();
+		// only the unvisited cities are looked at
+		int numUnvisited = unvisited.size();
+		double runningProbSum = 0.0;
 
-		int counter = 0;
+		for (int i = 0; i < numUnvisited; i++) {
+			int city = unvisited.get(i);
+			if (this.candidateLists == null) {
+				runningProbSum += choices[city];
+			} else {
+				runningProbSum += power(this.pheromones.get(cityId, city), this.alpha) * getHeuristic(cityId, city);
+			}
+			probabilities[i] = runningProbSum;
+		}
+
+		return unvisited.get(pickCityFromProbabilities(probabilities, numUnvisited, rand));
+	}
+
+	/**
+	 * Spins the roulette wheel over a buffer of running sums, i.e. picks index i
+	 * with probability (runningSums[i] - runningSums[i - 1]) / runningSums[length -
+	 * 1]. The sums do not need to be normalized.
+	 * 
+	 * @param runningSums The running sums of the weights of the choices.
+	 * @param length      The number of choices (entries of runningSums used).
+	 * @param rand        The random number generator to draw from.
+	 * @return The index of the chosen entry.
+	 */
+	public static int pickCityFromProbabilities(double[] runningSums, int length, SplittableRandom rand) {
+
+		double randDouble = rand.nextDouble() * runningSums[length - 1];
+
+		// binary search for the first running sum above the drawn number
+		int low = 0;
+		int high = length - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (runningSums[middle] > randDouble) {
+				high = middle;
+			} else {
+				low = middle + 1;
+			}
+		}
 
-		while (probabilities[counter] < randDouble) {
-			counter++;
+		// rounding can leave the drawn number at the very end of the wheel, never
+		// return an entry with no weight (e.g. a visited city)
+		while (low > 0 && runningSums[low] == runningSums[low - 1]) {
+			low--;
 		}
-		return counter;
+		return low;
 	}
 
 	/***********************************
@@ -208,7 +548,8 @@ public class Environment {
 	 * 
 	 * Using this information, a city is added to the tour if it maximizes the
 	 * tau(i,j) * eta(i,j)^beta if and only if the ant has not yet visited the next
-	 * city.
+	 * city. When candidate lists are built, only the candidates of cityId are
+	 * looked at unless all of them have already been visited.
 	 * 
 	 * So given a city id, which can be interpretted to be i in this case, we are
 	 * looking to pick some city j that minimizes the above statement if an ant has
@@ -216,35 +557,54 @@ public class Environment {
 	 * 
 	 * @param cityId     The id of the city we are looking to connect another node
 	 *                   to.
-	 * @param visitedSet Set of the cities that the ant has already visited.
+	 * @param unvisited  The cities that the ant has not visited yet.
 	 * @return The next city to add to the tour.
 	 */
-	public int getNextCityGreedy(int cityId, Set<Integer> visitedSet) {
-
-		double[] neighboringCities = this.distances[cityId];
-		double[] neighoringPheromones = this.pheromones[cityId];
-
-		double bestProductSoFar = 0.0;
-		int bestCitySoFar = 0;
+	public int getNextCityGreedy(int cityId, UnvisitedCities unvisited) {
+
+		if (this.candidateLists != null) {
+			int[] candidates = this.candidateLists[cityId];
+			double bestProductSoFar = -1.0;
+			int bestCitySoFar = -1;
+
+			for (int i = 0; i < candidates.length; i++) {
+				int candidate = candidates[i];
+				if (!unvisited.isVisited(candidate)) {
+					double product = this.alpha == 1.0 ? this.choiceInfo[cityId][i]
+							: this.pheromones.getCandidate(cityId, i) * this.heuristics[cityId][i];
+					if (product > bestProductSoFar) {
+						bestProductSoFar = product;
+						bestCitySoFar = candidate;
+					}
+				}
+			}
 
-		for (int i = 0; i < neighboringCities.length; i++) {
+			if (bestCitySoFar != -1) {
+				return bestCitySoFar;
+			}
+			// every candidate has been visited, fall back to the full scan below
+		}
 
-			double product = 0.0;
+		double bestProductSoFar = -1.0;
+		int bestCitySoFar = unvisited.get(0);
 
-			// if the ant has not yet visited the city
-			if (!visitedSet.contains(i)) {
+		// only the cities the ant has not yet visited are looked at
+		for (int i = 0; i < unvisited.size(); i++) {
+			int city = unvisited.get(i);
 
-				// calculate the product
-				double eta = 1.0 / neighboringCities[i];
-				double pheromoneContent = neighoringPheromones[i];
-				product = pheromoneContent * Math.pow(eta, this.beta);
+			// calculate the product
+			double product;
+			if (this.alpha == 1.0 && this.candidateLists == null) {
+				product = this.choiceInfo[cityId][city];
+			} else {
+				product = this.pheromones.get(cityId, city) * getHeuristic(cityId, city);
+			}
 
-				// if we find a greater product, then reset the bestProductSoFar and
-				// bestCitySoFar
-				if (product > bestProductSoFar) {
-					bestProductSoFar = product;
-					bestCitySoFar = i;
-				}
+			// if we find a greater product, then reset the bestProductSoFar and
+			// bestCitySoFar
+			if (product > bestProductSoFar) {
+				bestProductSoFar = product;
+				bestCitySoFar = city;
 			}
 		}
 		return bestCitySoFar;
@@ -300,18 +660,18 @@ public class Environment {
 			int city1 = tour[i];
 			int city2 = tour[i + 1];
 
-			double pheromonesCurrent = this.pheromones[city1][city2];
+			double pheromonesCurrent = this.pheromones.get(city1, city2);
 			double newPheromoneContent = (1.0 - this.rho) * pheromonesCurrent + pheromoneBoost * this.rho;
-			this.pheromones[city1][city2] = newPheromoneContent;
-			this.pheromones[city2][city1] = newPheromoneContent;
+			this.pheromones.set(city1, city2, newPheromoneContent);
+			refreshChoiceInfo(city1, city2);
 		}
 
 		int city1 = tour[tour.length - 1];
 		int city2 = tour[0];
-		double pheromonesCurrent = this.pheromones[city1][city2];
+		double pheromonesCurrent = this.pheromones.get(city1, city2);
 		double newPheromoneContent = (1.0 - this.rho) * pheromonesCurrent + pheromoneBoost * this.rho;
-		this.pheromones[city1][city2] = newPheromoneContent;
-		this.pheromones[city2][city1] = newPheromoneContent;
+		this.pheromones.set(city1, city2, newPheromoneContent);
+		refreshChoiceInfo(city1, city2);
 	}
 
 	/**
@@ -329,11 +689,26 @@ public class Environment {
 	 */
 	public void antColonySystemLocalUpdate(int city1, int city2) {
 
-		this.pheromones[city1][city2] = (1.0 - this.epsilon) * this.pheromones[city1][city2] + this.epsilon * this.tau;
-		this.pheromones[city2][city1] = (1.0 - this.epsilon) * this.pheromones[city2][city1] + this.epsilon * this.tau;
+		double newPheromoneContent = (1.0 - this.epsilon) * this.pheromones.get(city1, city2) + this.epsilon * this.tau;
+		this.pheromones.set(city1, city2, newPheromoneContent);
+		refreshChoiceInfo(city1, city2);
 
 	}
 
+	/**
+	 * Applies the ACS local update to the legs of a finished tour in the order
+	 * they were added (the closing leg back to the starting city excluded), exactly
+	 * as if it had been done while the tour was constructed. Used when the ants
+	 * build their tours in parallel and the local updates are deferred.
+	 * 
+	 * @param tour The tour an ant created.
+	 */
+	public void antColonySystemLocalUpdate(int[] tour) {
+		for (int i = 0; i < tour.length - 1; i++) {
+			antColonySystemLocalUpdate(tour[i], tour[i + 1]);
+		}
+	}
+
 	/********************************
 	 * PERTINENT ELITIST ANT SYSTEM METHODS
 	 *******************************/
@@ -348,58 +723,105 @@ public class Environment {
 	 * t(i, j) [note: at timestep t+1] = (1 - rho)t(i,j) [note at timestep t] + (1 /
 	 * cost(bestTourSofar))*rho
 	 * 
+	 * The legs of the best tour are looked up through a successor index, so the
+	 * whole update is a single O(n^2) pass over the matrix.
+	 * 
 	 * @param bestAnt The best ant, which holds the bestTourSoFar.
 	 */
 	public void elitistGlobalPheromoneUpdate(Ant bestAnt) {
 
-		// convert the tour to a string (so that we can only update legs in the best so
-		// far)
-		String bestTourSoFarString = "";
-		int[] bestTourSoFar = bestAnt.getTour();
+		if (this.pheromones instanceof CandidatePheromoneStore) {
+			sparseElitistGlobalPheromoneUpdate(bestAnt);
+			return;
+		}
 
-		for (int i = 0; i < bestTourSoFar.length; i++) {
-			bestTourSoFarString += Integer.toString(bestTourSoFar[i]);
-			bestTourSoFarString += ".";
+		double[][] pheromones = ((DensePheromoneStore) this.pheromones).getMatrix();
+		double[][] iterationPheromones = ((DensePheromoneStore) getIterationPheromones()).getMatrix();
+
+		// index the best tour so far by successor, so that checking whether (i, j) is
+		// one of its legs is O(1)
+		int[] bestTourSoFar = bestAnt.getTour();
+		if (this.bestTourSuccessors == null || this.bestTourSuccessors.length != this.numCities) {
+			this.bestTourSuccessors = new int[this.numCities];
+		}
+		int[] successors = this.bestTourSuccessors;
+		for (int i = 0; i < bestTourSoFar.length - 1; i++) {
+			successors[bestTourSoFar[i]] = bestTourSoFar[i + 1];
 		}
-		bestTourSoFarString += bestTourSoFar[0];
+		successors[bestTourSoFar[bestTourSoFar.length - 1]] = bestTourSoFar[0];
 
 		double pheromoneBoost = 1.0 / bestAnt.getTotalCost();
+		boolean fullChoiceInfo = this.candidateLists == null;
 
 		// iterate over the pheromones adjacency matrix
 		for (int i = 0; i < numCities; i++) {
-			for (int j = i; j < numCities; j++) {
+			double[] pheromoneRow = pheromones[i];
+			double[] iterationRow = iterationPheromones[i];
+			int successor = successors[i];
 
-				// create stringified edges - so that we can compare to our stringified tour
-				String edge = Integer.toString(i);
-				edge += ".";
-				edge += Integer.toString(j);
-				String edgeReverse = Integer.toString(j);
-				edgeReverse += ".";
-				edgeReverse += Integer.toString(i);
+			for (int j = i; j < numCities; j++) {
 
 				// grab and compute (1 - rho)t(i,j)
-				double evaporatedPheromones = this.pheromones[i][j] * (1.0 - this.rho);
+				double evaporatedPheromones = pheromoneRow[j] * (1.0 - this.rho);
 
 				// get what we are going to add based on the pheromones deposited on the
 				// iteration
-				double newPheromoneAdditions = this.iterationPheromones[i][j];
+				double newPheromoneAdditions = iterationRow[j];
 
 				// reset
-				this.iterationPheromones[i][j] = 0.0;
-				this.iterationPheromones[j][i] = 0.0;
+				iterationRow[j] = 0.0;
+				iterationPheromones[j][i] = 0.0;
 
-				// check to see if our tourString contains the edges we are looking at
-				// if they do then compute the newPheromoneAdditions
-				if (bestTourSoFarString.contains(edge) || bestTourSoFarString.contains(edgeReverse)) {
+				// if (i, j) is a leg of the best tour so far, add the elitist bonus
+				if (j != i && (successor == j || successors[j] == i)) {
 					newPheromoneAdditions += pheromoneBoost * (this.elitistNum);
 				}
 
 				// update pheromones instance var
-				this.pheromones[i][j] = evaporatedPheromones + newPheromoneAdditions;
-				this.pheromones[j][i] = evaporatedPheromones + newPheromoneAdditions;
+				pheromoneRow[j] = evaporatedPheromones + newPheromoneAdditions;
+				pheromones[j][i] = evaporatedPheromones + newPheromoneAdditions;
+
+				// and the choice info of the edge in the same pass
+				if (fullChoiceInfo) {
+					double choice = power(pheromoneRow[j], this.alpha) * this.heuristics[i][j];
+					this.choiceInfo[i][j] = choice;
+					this.choiceInfo[j][i] = choice;
+				}
 			}
 		}
 
+		if (!fullChoiceInfo) {
+			refreshChoiceInfo();
+		}
+	}
+
+	/**
+	 * The elitist global update on a CandidatePheromoneStore. Evaporation is a
+	 * single multiplication of the store's decay factor, so apart from the O(n * k)
+	 * merge of the iteration pheromones this only touches the edges of the best
+	 * tour.
+	 * 
+	 * @param bestAnt The best ant, which holds the bestTourSoFar.
+	 */
+	private void sparseElitistGlobalPheromoneUpdate(Ant bestAnt) {
+		CandidatePheromoneStore pheromones = (CandidatePheromoneStore) this.pheromones;
+		CandidatePheromoneStore iterationPheromones = (CandidatePheromoneStore) getIterationPheromones();
+
+		// (1 - rho)t(i,j) + the pheromones deposited on the iteration
+		pheromones.evaporate(1.0 - this.rho);
+		pheromones.addAll(iterationPheromones);
+		iterationPheromones.fill(0.0);
+
+		// elitist bonus on the legs of the best tour so far
+		int[] bestTourSoFar = bestAnt.getTour();
+		double elitistBoost = 1.0 / bestAnt.getTotalCost() * this.elitistNum;
+		for (int i = 0; i < bestTourSoFar.length; i++) {
+			int city1 = bestTourSoFar[i];
+			int city2 = bestTourSoFar[(i + 1) % bestTourSoFar.length];
+			pheromones.deposit(city1, city2, elitistBoost);
+		}
+
+		refreshChoiceInfo();
 	}
 
 	/**
@@ -415,20 +837,299 @@ public class Environment {
 	public void addIterationPheromonesElitist(int[] tour, double tourLength) {
 
 		double pheromoneAddition = 1.0 / tourLength;
+		PheromoneStore iterationPheromones = getIterationPheromones();
 
 		// for each city in the tour, update the pheromones to the 1 / tour length
 		for (int i = 0; i < tour.length - 1; i++) {
 			int city1 = tour[i];
 			int city2 = tour[i + 1];
-			this.iterationPheromones[city1][city2] = pheromoneAddition;
-			this.iterationPheromones[city2][city1] = pheromoneAddition;
+			iterationPheromones.set(city1, city2, pheromoneAddition);
 		}
 
 		// mannually dealing with first and last node connection in list
 		int city1 = tour[tour.length - 1];
 		int city2 = tour[0];
-		this.iterationPheromones[city1][city2] = pheromoneAddition;
-		this.iterationPheromones[city2][city1] = pheromoneAddition;
+		iterationPheromones.set(city1, city2, pheromoneAddition);
+	}
+
+	/**
+	 * Getter for the store of the pheromones deposited during the current EAS
+	 * iteration. It is created on first use (with the same layout as the
+	 * pheromones) so that ACS runs never pay for it.
+	 * 
+	 * @return The iteration pheromones, initially all 0.
+	 */
+	private PheromoneStore getIterationPheromones() {
+		if (this.iterationPheromones == null) {
+			if (this.pheromones instanceof CandidatePheromoneStore) {
+				this.iterationPheromones = new CandidatePheromoneStore(this.candidateLists);
+			} else {
+				this.iterationPheromones = new DensePheromoneStore(this.numCities, this.candidateLists);
+			}
+		}
+		return this.iterationPheromones;
+	}
+
+	/********************************
+	 * PERTINENT RANK-BASED ANT SYSTEM METHODS
+	 *******************************/
+
+	/**
+	 * Global update for the rank-based Ant System. The numRanked best ants of the
+	 * iteration deposit weighted pheromones, the r-th best (r = 1, 2, ...) with
+	 * weight numRanked - r + 1, and the best ant so far deposits with weight
+	 * numRanked + 1:
+	 * 
+	 * t(i, j) = (1 - rho)t(i,j) + sum over the depositing ants of weight / cost(tour)
+	 * 
+	 * The tours are indexed by successor and predecessor, so evaporation and the
+	 * deposits are a single pass over the matrix (fused with the choice info
+	 * update as in elitistGlobalPheromoneUpdate): every edge gets its deposits
+	 * right after its row has evaporated, from its lower numbered city. On a
+	 * CandidatePheromoneStore evaporation is O(1) and only the legs of the tours
+	 * are touched.
+	 * 
+	 * @param rankedAnts The best ants of the iteration, best first.
+	 * @param numRanked  The number of entries of rankedAnts to use.
+	 * @param bestAnt    The best ant so far.
+	 */
+	public void rankBasedGlobalUpdate(Ant[] rankedAnts, int numRanked, Ant bestAnt) {
+		int numDepositing = numRanked + 1;
+
+		if (this.pheromones instanceof CandidatePheromoneStore) {
+			this.pheromones.evaporate(1.0 - this.rho);
+			for (int d = 0; d < numDepositing; d++) {
+				Ant ant = d < numRanked ? rankedAnts[d] : bestAnt;
+				double pheromoneAddition = rankWeight(d, numRanked) / ant.getTotalCost();
+				int[] tour = ant.getTour();
+				for (int i = 0; i < tour.length; i++) {
+					this.pheromones.deposit(tour[i], tour[i + 1 == tour.length ? 0 : i + 1], pheromoneAddition);
+				}
+			}
+			refreshChoiceInfo();
+			return;
+		}
+
+		// index every depositing tour by successor (even rows) and predecessor (odd rows)
+		if (this.rankedTourNeighbours == null || this.rankedTourNeighbours.length < 2 * numDepositing) {
+			this.rankedTourNeighbours = new int[2 * numDepositing][this.numCities];
+		}
+		int[][] neighbours = this.rankedTourNeighbours;
+		if (this.rankedTourAdditions == null || this.rankedTourAdditions.length < numDepositing) {
+			this.rankedTourAdditions = new double[numDepositing];
+		}
+		double[] pheromoneAdditions = this.rankedTourAdditions;
+		for (int d = 0; d < numDepositing; d++) {
+			Ant ant = d < numRanked ? rankedAnts[d] : bestAnt;
+			pheromoneAdditions[d] = rankWeight(d, numRanked) / ant.getTotalCost();
+			int[] tour = ant.getTour();
+			for (int i = 0; i < tour.length; i++) {
+				int next = tour[i + 1 == tour.length ? 0 : i + 1];
+				neighbours[2 * d][tour[i]] = next;
+				neighbours[2 * d + 1][next] = tour[i];
+			}
+		}
+
+		double[][] pheromones = ((DensePheromoneStore) this.pheromones).getMatrix();
+		boolean fullChoiceInfo = this.candidateLists == null;
+
+		for (int i = 0; i < this.numCities; i++) {
+			double[] pheromoneRow = pheromones[i];
+
+			// (1 - rho)t(i,j) on the upper triangle, mirrored
+			for (int j = i; j < this.numCities; j++) {
+				double evaporatedPheromones = pheromoneRow[j] * (1.0 - this.rho);
+				pheromoneRow[j] = evaporatedPheromones;
+				pheromones[j][i] = evaporatedPheromones;
+				if (fullChoiceInfo) {
+					double choice = power(evaporatedPheromones, this.alpha) * this.heuristics[i][j];
+					this.choiceInfo[i][j] = choice;
+					this.choiceInfo[j][i] = choice;
+				}
+			}
+
+			// the deposits on the legs (i, j) with j > i
+			for (int row = 0; row < 2 * numDepositing; row++) {
+				int j = neighbours[row][i];
+				if (j > i) {
+					pheromoneRow[j] += pheromoneAdditions[row / 2];
+					pheromones[j][i] = pheromoneRow[j];
+					if (fullChoiceInfo) {
+						double choice = power(pheromoneRow[j], this.alpha) * this.heuristics[i][j];
+						this.choiceInfo[i][j] = choice;
+						this.choiceInfo[j][i] = choice;
+					}
+				}
+			}
+		}
+
+		if (!fullChoiceInfo) {
+			refreshChoiceInfo();
+		}
+	}
+
+	/**
+	 * The weight of a depositing ant in rankBasedGlobalUpdate.
+	 * 
+	 * @param d         The index of the ant: 0 for the best of the iteration, up
+	 *                  to numRanked - 1, and numRanked for the best ant so far.
+	 * @param numRanked The number of ranked ants of the iteration.
+	 * @return numRanked - d for the ranked ants, numRanked + 1 for the best ant so
+	 *         far.
+	 */
+	private static double rankWeight(int d, int numRanked) {
+		return d < numRanked ? numRanked - d : numRanked + 1;
+	}
+
+	/********************************
+	 * PERTINENT MAX-MIN ANT SYSTEM METHODS
+	 *******************************/
+
+	/**
+	 * Global update for MAX-MIN Ant System. Only one ant deposits pheromones (the
+	 * iteration best or the best so far, depending on the MMAS schedule), and the
+	 * pheromones are kept between the trail limits:
+	 * 
+	 * t(i, j) = (1 - rho)t(i,j) + 1 / cost(tour) if (i, j) is a leg of the tour,
+	 * (1 - rho)t(i,j) otherwise, then limited to [tauMin, tauMax]
+	 * 
+	 * When candidate lists are built only the candidate edges evaporate, so the
+	 * update costs O(n * k): on a CandidatePheromoneStore evaporation is O(1) and
+	 * clamping O(n * k), on a dense matrix the candidate edges are updated one by
+	 * one and the other edges keep their value (they are only looked at once all
+	 * the candidates of a city have been visited).
+	 * 
+	 * @param ant    The ant whose tour deposits pheromones.
+	 * @param tauMin The lower trail limit.
+	 * @param tauMax The upper trail limit.
+	 */
+	public void maxMinGlobalUpdate(Ant ant, double tauMin, double tauMax) {
+		boolean candidateEdgesOnly = this.candidateLists != null && this.pheromones instanceof DensePheromoneStore;
+		int[] edges = candidateEdgesOnly ? getCandidateEdges() : null;
+
+		// (1 - rho)t(i,j)
+		if (candidateEdgesOnly) {
+			for (int e = 0; e < edges.length; e += 2) {
+				int city1 = edges[e];
+				int city2 = edges[e + 1];
+				this.pheromones.set(city1, city2, this.pheromones.get(city1, city2) * (1.0 - this.rho));
+			}
+		} else {
+			this.pheromones.evaporate(1.0 - this.rho);
+		}
+
+		// deposit on the legs of the tour
+		int[] tour = ant.getTour();
+		double pheromoneBoost = 1.0 / ant.getTotalCost();
+		for (int i = 0; i < tour.length; i++) {
+			int city1 = tour[i];
+			int city2 = tour[i + 1 == tour.length ? 0 : i + 1];
+			this.pheromones.set(city1, city2, Math.min(tauMax, this.pheromones.get(city1, city2) + pheromoneBoost));
+		}
+
+		// keep the pheromones within the trail limits
+		if (candidateEdgesOnly) {
+			for (int e = 0; e < edges.length; e += 2) {
+				int city1 = edges[e];
+				int city2 = edges[e + 1];
+				if (this.pheromones.get(city1, city2) < tauMin) {
+					this.pheromones.set(city1, city2, tauMin);
+				}
+			}
+		} else {
+			this.pheromones.clamp(tauMin, tauMax);
+		}
+
+		refreshChoiceInfo();
+	}
+
+	/**
+	 * Sets the pheromones on every edge back to the same value, e.g. when MMAS
+	 * reinitializes the trails after stagnating. Unlike setInitialPheromones this
+	 * keeps the pheromone store and the heuristics, and leaves tau0 alone.
+	 * 
+	 * @param pheromoneContent The pheromone amount on every edge.
+	 */
+	public void resetPheromones(double pheromoneContent) {
+		this.pheromones.fill(pheromoneContent);
+		refreshChoiceInfo();
+	}
+
+	/**
+	 * Computes the average lambda-branching factor of the pheromones, which MMAS
+	 * uses to detect stagnation. An edge of city i counts as a branch if its
+	 * pheromones are at least min_i + lambda * (max_i - min_i), where min_i and
+	 * max_i are the lowest and highest pheromones on the edges of city i (its
+	 * candidate edges when candidate lists are built). The average number of
+	 * branches is divided by 2, so a colony that has converged to a single tour
+	 * gives a value close to 1.
+	 * 
+	 * @param lambda The fraction of the range of pheromones, typically 0.05.
+	 * @return The average branching factor divided by 2.
+	 */
+	public double getBranchingFactor(double lambda) {
+		long branches = 0;
+		for (int i = 0; i < this.numCities; i++) {
+			int numEdges = this.candidateLists != null ? this.candidateLists[i].length : this.numCities;
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for (int j = 0; j < numEdges; j++) {
+				if (this.candidateLists == null && j == i) {
+					continue;
+				}
+				double pheromoneContent = this.candidateLists != null ? this.pheromones.getCandidate(i, j)
+						: this.pheromones.get(i, j);
+				min = Math.min(min, pheromoneContent);
+				max = Math.max(max, pheromoneContent);
+			}
+
+			double cutoff = min + lambda * (max - min);
+			for (int j = 0; j < numEdges; j++) {
+				if (this.candidateLists == null && j == i) {
+					continue;
+				}
+				double pheromoneContent = this.candidateLists != null ? this.pheromones.getCandidate(i, j)
+						: this.pheromones.get(i, j);
+				if (pheromoneContent >= cutoff) {
+					branches++;
+				}
+			}
+		}
+		return branches / (2.0 * this.numCities);
+	}
+
+	/**
+	 * Getter for the candidate edges, each listed once as a pair of city ids (an
+	 * edge that is in both cities' candidate lists is not repeated). Built on first
+	 * use, in O(n * k^2).
+	 * 
+	 * @return The candidate edges, as city1, city2, city1, city2, ...
+	 */
+	private int[] getCandidateEdges() {
+		if (this.candidateEdges == null) {
+			int numEdges = 0;
+			int[] edges = new int[2 * this.numCities * this.candidateLists[0].length];
+			for (int i = 0; i < this.numCities; i++) {
+				for (int candidate : this.candidateLists[i]) {
+					if (i < candidate || !contains(this.candidateLists[candidate], i)) {
+						edges[numEdges++] = i;
+						edges[numEdges++] = candidate;
+					}
+				}
+			}
+			this.candidateEdges = Arrays.copyOf(edges, numEdges);
+		}
+		return this.candidateEdges;
+	}
+
+	// whether city is one of the given candidates
+	private static boolean contains(int[] candidates, int city) {
+		for (int candidate : candidates) {
+			if (candidate == city) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/********************************
@@ -443,6 +1144,53 @@ public class Environment {
 		this.elitistNum = this.numAnts;
 	}
 
+	/**
+	 * Sets the number of nearest neighbours kept in each city's candidate list.
+	 * Typical values are 10 to 30; 0 (the default) disables candidate lists so
+	 * that tour construction scans every city.
+	 * 
+	 * @param candidateListSize The number of candidates per city.
+	 */
+	public void setCandidateListSize(int candidateListSize) {
+		this.candidateListSize = candidateListSize;
+	}
+
+	/**
+	 * Enables the sparse pheromone store, which only keeps pheromones on the
+	 * candidate list edges and evaporates lazily. Only takes effect if candidate
+	 * lists are built. Must be called before setInitialPheromones.
+	 * 
+	 * @param sparsePheromones True to use a CandidatePheromoneStore, false (the
+	 *                         default) for a dense pheromone matrix.
+	 */
+	public void setSparsePheromones(boolean sparsePheromones) {
+		this.sparsePheromones = sparsePheromones;
+	}
+
+	/**
+	 * Getter for the candidate list size.
+	 * 
+	 * @return The number of candidates per city, 0 when candidate lists are
+	 *         disabled.
+	 */
+	public int getCandidateListSize() {
+		return this.candidateListSize;
+	}
+
+	/**
+	 * Getter for the candidate list of a city.
+	 * 
+	 * @param cityId The id of the city.
+	 * @return The ids of the nearest neighbours of cityId sorted by distance, or
+	 *         null if candidate lists have not been built.
+	 */
+	public int[] getCandidateList(int cityId) {
+		if (this.candidateLists == null) {
+			return null;
+		}
+		return this.candidateLists[cityId];
+	}
+
 	/**
 	 * Get a distance between two nodes (city1 and city2) from our distance
 	 * adjacency matrix.
@@ -452,7 +1200,7 @@ public class Environment {
 	 * @return Distance between two cities
 	 */
 	public double getDistance(int city1, int city2) {
-		return this.distances[city1][city2];
+		return this.distances.getDistance(city1, city2);
 
 	}
 
@@ -465,7 +1213,7 @@ public class Environment {
 	 * @return The pheromones on the edge between city1 and city2.
 	 */
 	public double getPheromones(int city1, int city2) {
-		return this.pheromones[city1][city2];
+		return this.pheromones.get(city1, city2);
 
 	}
 
@@ -479,14 +1227,99 @@ public class Environment {
 	}
 
 	/**
-	 * Getter to retrieve our distances adjacency matrix.
+	 * Getter to retrieve the provider of the distances between cities.
 	 * 
-	 * @return The distance adjacency matrix.
+	 * @return The DistanceProvider set up by calculateDistances.
 	 */
-	public double[][] getDistanceMatrix() {
+	public DistanceProvider getDistances() {
 		return this.distances;
 	}
 
+	/**
+	 * Getter for the spatial index over the city coordinates.
+	 * 
+	 * @return The KdTree built by calculateDistances, or null if the distances do
+	 *         not follow the Euclidean order of the coordinates (GEO and EXPLICIT
+	 *         problems, or distances set with setDistances).
+	 */
+	public KdTree getSpatialIndex() {
+		return this.spatialIndex;
+	}
+
+	/**
+	 * Sets how the distances are stored. Must be called before
+	 * calculateDistances.
+	 * 
+	 * @param distanceStorage MATRIX (the default) for a dense adjacency matrix,
+	 *                        COMPACT for a packed triangle of small numbers,
+	 *                        ON_THE_FLY or CANDIDATE_CACHE to compute distances
+	 *                        from the coordinates with O(n) or O(n * k) memory.
+	 */
+	public void setDistanceStorage(DistanceStorage distanceStorage) {
+		this.distanceStorage = distanceStorage;
+	}
+
+	/**
+	 * Sets how the distance between two cities is computed from their
+	 * coordinates. Must be called before calculateDistances.
+	 * 
+	 * @param edgeWeightType The edge weight type, EUCLIDEAN by default.
+	 */
+	public void setEdgeWeightType(EdgeWeightType edgeWeightType) {
+		this.edgeWeightType = edgeWeightType;
+	}
+
+	/**
+	 * Sets up the distances of a problem read from a TSPLIB file. For an EXPLICIT
+	 * instance the edge weights of the file are kept in a packed triangle (see
+	 * TriangularDistanceProvider) and calculateDistances uses them whatever the
+	 * distance storage; otherwise the edge weight type is set to the instance's
+	 * EDGE_WEIGHT_TYPE, so the distances are computed from the coordinates the
+	 * way TSPLIB defines them. A distance triangle or candidate lists loaded by
+	 * the InstanceCache are used as they are, so calculateDistances and
+	 * buildCandidateLists do not compute them again. Must be called before
+	 * calculateDistances.
+	 * 
+	 * @param instance The problem.
+	 * @throws IllegalArgumentException If the EDGE_WEIGHT_TYPE is not supported.
+	 */
+	public void setProblem(TsplibInstance instance) {
+		this.presetDistances = instance.getDistanceTriangle();
+		if (this.presetDistances == null && instance.getEdgeWeights() != null) {
+			this.presetDistances = new TriangularDistanceProvider(instance.getDimension(), instance.getEdgeWeights());
+		}
+		this.explicitWeights = instance.isExplicit();
+		if (!this.explicitWeights) {
+			this.edgeWeightType = EdgeWeightType.fromTsplib(instance.getEdgeWeightType());
+		}
+		this.presetCandidateLists = instance.getCandidateLists();
+		this.presetSpatialIndex = null;
+	}
+
+	/**
+	 * Sets up the same problem as another Environment, reusing the distances,
+	 * spatial index and candidate lists that its calculateDistances and
+	 * buildCandidateLists have built instead of computing copies of them. These
+	 * are only read while optimizing, so colonies running on different threads
+	 * can share them (see MultiColonyOptimizer); the pheromones stay separate.
+	 * Must be called after source.buildCandidateLists and before
+	 * calculateDistances, and holds until setProblem is called.
+	 * 
+	 * @param source An Environment of a problem with as many cities.
+	 * @throws IllegalArgumentException If the number of cities differs.
+	 */
+	public void shareProblem(Environment source) {
+		if (source.numCities != this.numCities) {
+			throw new IllegalArgumentException(
+					"Cannot share a problem of " + source.numCities + " cities with " + this.numCities);
+		}
+		this.presetDistances = source.distances;
+		this.presetSpatialIndex = source.spatialIndex;
+		this.presetCandidateLists = source.candidateLists;
+		this.explicitWeights = source.explicitWeights;
+		this.edgeWeightType = source.edgeWeightType;
+	}
+
 	/**
 	 * Getter for the numCities.
 	 * 
@@ -507,6 +1340,15 @@ public class Environment {
 		return this.q;
 	}
 
+	/**
+	 * Getter for the evaporation rate rho.
+	 * 
+	 * @return The fraction of the pheromones that evaporates in a global update.
+	 */
+	public double getEvaporationRate() {
+		return this.rho;
+	}
+
 	/*******************************
 	 * METHODS USED TO PRINT/DEBUG
 	 *******************************************/
@@ -533,11 +1375,11 @@ public class Environment {
 	 */
 	public void printDistances() {
 
-		for (int i = 0; i < this.distances.length; i++) {
+		for (int i = 0; i < this.numCities; i++) {
 			String line = "";
 
-			for (int j = 0; j < this.distances.length; j++) {
-				line += " " + round(this.distances[i][j], 1);
+			for (int j = 0; j < this.numCities; j++) {
+				line += " " + round(this.distances.getDistance(i, j), 1);
 			}
 
 			System.out.println(line);
@@ -549,11 +1391,11 @@ public class Environment {
 	 * used for debugging purposes.
 	 */
 	public void printPheromones() {
-		for (int i = 0; i < this.pheromones.length; i++) {
+		for (int i = 0; i < this.numCities; i++) {
 			String line = "";
 
-			for (int j = 0; j < this.pheromones.length; j++) {
-				line += " " + round(this.pheromones[i][j], 1);
+			for (int j = 0; j < this.numCities; j++) {
+				line += " " + round(this.pheromones.get(i, j), 1);
 			}
 
 			System.out.println(line);
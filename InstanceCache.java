@@ -0,0 +1,423 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * On-disk cache of preprocessed problems. The first time a TSPLIB file is
+ * loaded, it is parsed, its candidate lists (and, if asked for, its distance
+ * triangle) are computed, and everything is written next to it in a binary
+ * file (the file name plus ".cache"). Later loads memory-map that file with
+ * FileChannel.map, so they need neither parsing nor distance computations. The
+ * metric is the EDGE_WEIGHT_TYPE of the file, so the file alone determines what
+ * is cached.
+ *
+ * The distance triangle, which is quadratic in the number of cities and makes up
+ * nearly all of the file, stays in the mapping: the TriangularDistanceProvider
+ * reads it from there, so it costs no heap and its pages are loaded by the
+ * operating system as they are used (and shared by the processes that map the
+ * same file). The coordinates and candidate lists, linear in the number of
+ * cities, are copied out in bulk, since the tour construction indexes them as
+ * arrays. A mapping stays valid after its file is replaced by a rebuild, as the
+ * new file is renamed over the old one.
+ *
+ * A cache file is rebuilt when the TSPLIB file changed (its size or modification
+ * time differ), when it has shorter candidate lists or no triangle while those
+ * are asked for, and when it cannot be read. If it cannot be written, the
+ * problem is still returned; it is then preprocessed again the next time.
+ *
+ * Layout (little endian): a header with the magic number, the version, the size
+ * and modification time of the TSPLIB file, the dimension, the candidate list
+ * size, the triangle element type and whether there are coordinates; the header
+ * strings; then, each aligned to 8 bytes, the x and y coordinates, the
+ * candidate lists row by row and the packed triangle (see
+ * TriangularDistanceProvider).
+ */
+public class InstanceCache {
+
+    private static final int MAGIC = 0x41434f43; // "ACOC"
+    private static final int VERSION = 1;
+    private static final int NO_TRIANGLE = 0;
+    private static final int CHAR_TRIANGLE = 1;
+    private static final int INT_TRIANGLE = 2;
+    private static final int FLOAT_TRIANGLE = 3;
+    private static final int CHUNK_SIZE = 1 << 30; // largest part of the file mapped at once
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Loads a problem with its candidate lists, from the cache if it is up to
+     * date and from the TSPLIB file otherwise.
+     *
+     * @param filename          The name of the TSPLIB file.
+     * @param candidateListSize The number of candidates per city, 0 for none.
+     * @param withDistances     Whether to also load the distance triangle (if
+     *                          there are few enough cities for one). EXPLICIT
+     *                          problems always come with theirs.
+     * @return The problem, with the preprocessed data attached (see
+     *         Environment.setProblem).
+     * @throws IOException If the TSPLIB file cannot be read or is not valid.
+     */
+    public static TsplibInstance load(String filename, int candidateListSize, boolean withDistances)
+            throws IOException {
+        File source = new File(filename);
+        Path cachePath = Paths.get(getCachePath(filename));
+        if (Files.exists(cachePath)) {
+            try {
+                TsplibInstance instance = read(cachePath, source, candidateListSize, withDistances);
+                if (instance != null) {
+                    return instance;
+                }
+            } catch (IOException | RuntimeException e) {
+                // a damaged cache file is rebuilt below
+            }
+        }
+
+        TsplibInstance instance = TsplibReader.read(filename);
+        preprocess(instance, candidateListSize, withDistances);
+        try {
+            write(cachePath, source, instance);
+        } catch (IOException e) {
+            // the cache is only an optimization, so a read only directory is fine
+        }
+        return instance;
+    }
+
+    /**
+     * Getter for the name of the cache file of a problem.
+     *
+     * @param filename The name of the TSPLIB file.
+     * @return The name of its cache file.
+     */
+    public static String getCachePath(String filename) {
+        return filename + ".cache";
+    }
+
+    /**
+     * Computes the candidate lists and, if asked for, the distance triangle of a
+     * problem and attaches them to it.
+     *
+     * @param instance          The problem.
+     * @param candidateListSize The number of candidates per city, 0 for none.
+     * @param withDistances     Whether to compute the distance triangle.
+     */
+    private static void preprocess(TsplibInstance instance, int candidateListSize, boolean withDistances) {
+        int numCities = instance.getDimension();
+        TriangularDistanceProvider triangle = null;
+        DistanceProvider distances;
+        KdTree spatialIndex = null;
+        if (instance.getEdgeWeights() != null) {
+            triangle = new TriangularDistanceProvider(numCities, instance.getEdgeWeights());
+            distances = triangle;
+        } else {
+            EdgeWeightType edgeWeightType = EdgeWeightType.fromTsplib(instance.getEdgeWeightType());
+            if (edgeWeightType.preservesEuclideanOrder()) {
+                spatialIndex = new KdTree(instance.getXCoords(), instance.getYCoords());
+            }
+            if (withDistances && fitsTriangle(numCities)) {
+                triangle = new TriangularDistanceProvider(instance.getCityList(), edgeWeightType);
+                distances = triangle;
+            } else {
+                distances = new CoordinateDistanceProvider(instance.getCityList(), edgeWeightType);
+            }
+        }
+
+        instance.setDistanceTriangle(triangle);
+        int k = Math.min(candidateListSize, numCities - 1);
+        if (k > 0) {
+            instance.setCandidateLists(Environment.findNearestNeighbours(distances, spatialIndex, k));
+        }
+    }
+
+    // whether a TriangularDistanceProvider can hold the distances between this many cities
+    private static boolean fitsTriangle(int numCities) {
+        return (long) numCities * (numCities - 1) / 2 <= Integer.MAX_VALUE - 8;
+    }
+
+    /**
+     * Reads a cache file.
+     *
+     * @param cachePath         The cache file.
+     * @param source            The TSPLIB file it was made from.
+     * @param candidateListSize The number of candidates per city needed.
+     * @param withDistances     Whether the distance triangle is needed.
+     * @return The problem, or null if the cache file is out of date or lacks
+     *         something that is needed.
+     * @throws IOException If the cache file cannot be read.
+     */
+    private static TsplibInstance read(Path cachePath, File source, int candidateListSize, boolean withDistances)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(cachePath, StandardOpenOption.READ)) {
+            long headerSize = Math.min(channel.size(), 1 << 16);
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, headerSize)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getLong() != source.length()
+                    || header.getLong() != source.lastModified()) {
+                return null;
+            }
+            int dimension = header.getInt();
+            int k = header.getInt();
+            int triangleType = header.getInt();
+            boolean hasCoordinates = header.getInt() != 0;
+            String name = getString(header);
+            String comment = getString(header);
+            String type = getString(header);
+            String edgeWeightType = getString(header);
+            String edgeWeightFormat = getString(header);
+
+            boolean explicit = edgeWeightType.equals("EXPLICIT");
+            if (k < Math.min(candidateListSize, dimension - 1)
+                    || (withDistances && !explicit && triangleType == NO_TRIANGLE && fitsTriangle(dimension))) {
+                return null;
+            }
+
+            long position = align(header.position());
+            long triangleSize = (long) dimension * (dimension - 1) / 2;
+            long expectedSize = align(position + (hasCoordinates ? 16L * dimension : 0) + 4L * dimension * k)
+                    + triangleSize * (triangleType == CHAR_TRIANGLE ? 2 : triangleType == NO_TRIANGLE ? 0 : 4);
+            if (channel.size() != expectedSize) {
+                return null;
+            }
+
+            double[] xCoords = null;
+            double[] yCoords = null;
+            if (hasCoordinates) {
+                xCoords = new double[dimension];
+                yCoords = new double[dimension];
+                position = readDoubles(channel, position, xCoords);
+                position = readDoubles(channel, position, yCoords);
+            }
+
+            int[][] candidateLists = null;
+            if (k > 0) {
+                int[] flat = new int[dimension * k];
+                position = readInts(channel, position, flat);
+                candidateLists = new int[dimension][];
+                for (int i = 0; i < dimension; i++) {
+                    candidateLists[i] = Arrays.copyOfRange(flat, i * k, (i + 1) * k);
+                }
+            }
+
+            TriangularDistanceProvider triangle = null;
+            if (triangleType != NO_TRIANGLE) {
+                triangle = mapTriangle(channel, position, dimension, triangleType);
+            }
+
+            TsplibInstance instance = new TsplibInstance(name, comment, type, dimension, edgeWeightType,
+                    edgeWeightFormat, xCoords, yCoords, null);
+            instance.setCandidateLists(candidateLists);
+            instance.setDistanceTriangle(triangle);
+            return instance;
+        }
+    }
+
+    /**
+     * Writes a cache file. The file is written under a temporary name and then
+     * renamed, so that a run reading the cache never sees half a file.
+     *
+     * @param cachePath The cache file.
+     * @param source    The TSPLIB file the problem was read from.
+     * @param instance  The preprocessed problem.
+     * @throws IOException If the cache file cannot be written.
+     */
+    private static void write(Path cachePath, File source, TsplibInstance instance) throws IOException {
+        int dimension = instance.getDimension();
+        int[][] candidateLists = instance.getCandidateLists();
+        int k = candidateLists != null ? candidateLists[0].length : 0;
+        TriangularDistanceProvider triangle = instance.getDistanceTriangle();
+        int triangleType = NO_TRIANGLE;
+        if (triangle != null) {
+            triangleType = triangle.getShortDistances() != null ? CHAR_TRIANGLE
+                    : triangle.getIntDistances() != null ? INT_TRIANGLE : FLOAT_TRIANGLE;
+        }
+
+        Path tempPath = Files.createTempFile(cachePath.toAbsolutePath().getParent(),
+                cachePath.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(source.length()).putLong(source.lastModified());
+            buffer.putInt(dimension).putInt(k).putInt(triangleType).putInt(instance.hasCoordinates() ? 1 : 0);
+            putString(buffer, instance.getName());
+            putString(buffer, instance.getComment());
+            putString(buffer, instance.getType());
+            putString(buffer, instance.getEdgeWeightType());
+            putString(buffer, instance.getEdgeWeightFormat());
+            pad(channel, buffer);
+
+            if (instance.hasCoordinates()) {
+                for (double x : instance.getXCoords()) {
+                    flushIfFull(channel, buffer, 8).putDouble(x);
+                }
+                for (double y : instance.getYCoords()) {
+                    flushIfFull(channel, buffer, 8).putDouble(y);
+                }
+            }
+            for (int i = 0; i < dimension && k > 0; i++) {
+                for (int candidate : candidateLists[i]) {
+                    flushIfFull(channel, buffer, 4).putInt(candidate);
+                }
+            }
+            pad(channel, buffer);
+            if (triangleType == CHAR_TRIANGLE) {
+                for (char distance : triangle.getShortDistances()) {
+                    flushIfFull(channel, buffer, 2).putChar(distance);
+                }
+            } else if (triangleType == INT_TRIANGLE) {
+                for (int distance : triangle.getIntDistances()) {
+                    flushIfFull(channel, buffer, 4).putInt(distance);
+                }
+            } else if (triangleType == FLOAT_TRIANGLE) {
+                for (float distance : triangle.getFloatDistances()) {
+                    flushIfFull(channel, buffer, 4).putFloat(distance);
+                }
+            }
+            flushIfFull(channel, buffer, buffer.capacity());
+        } catch (IOException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+        Files.move(tempPath, cachePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes out the buffer if it has less room left than needed.
+     *
+     * @param channel The file being written.
+     * @param buffer  The write buffer.
+     * @param needed  The number of bytes about to be put.
+     * @return The buffer.
+     * @throws IOException If the file cannot be written.
+     */
+    private static ByteBuffer flushIfFull(FileChannel channel, ByteBuffer buffer, int needed) throws IOException {
+        if (buffer.remaining() < needed) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        return buffer;
+    }
+
+    // put zeros until the file is a multiple of 8 bytes long
+    private static void pad(FileChannel channel, ByteBuffer buffer) throws IOException {
+        flushIfFull(channel, buffer, 8);
+        while ((channel.position() + buffer.position()) % 8 != 0) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    // an int length followed by the UTF-8 bytes
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // the next multiple of 8
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    /**
+     * Maps the distance triangle, a chunk of
+     * TriangularDistanceProvider.MAPPED_CHUNK_SIZE entries at a time, without
+     * copying it.
+     *
+     * @param channel      The cache file.
+     * @param position     Where the triangle starts.
+     * @param dimension    The number of cities.
+     * @param triangleType The element type of the triangle.
+     * @return The distances, read from the mapping.
+     * @throws IOException If the file cannot be mapped.
+     */
+    private static TriangularDistanceProvider mapTriangle(FileChannel channel, long position, int dimension,
+            int triangleType) throws IOException {
+        long size = (long) dimension * (dimension - 1) / 2;
+        int perChunk = TriangularDistanceProvider.MAPPED_CHUNK_SIZE;
+        int numChunks = (int) ((size + perChunk - 1) / perChunk);
+        int elementSize = triangleType == CHAR_TRIANGLE ? 2 : 4;
+        CharBuffer[] shortDistances = triangleType == CHAR_TRIANGLE ? new CharBuffer[numChunks] : null;
+        IntBuffer[] intDistances = triangleType == INT_TRIANGLE ? new IntBuffer[numChunks] : null;
+        FloatBuffer[] floatDistances = triangleType == FLOAT_TRIANGLE ? new FloatBuffer[numChunks] : null;
+        for (int c = 0; c < numChunks; c++) {
+            long count = Math.min(perChunk, size - (long) c * perChunk);
+            ByteBuffer chunk = map(channel, position + (long) c * perChunk * elementSize, count * elementSize);
+            if (shortDistances != null) {
+                shortDistances[c] = chunk.asCharBuffer();
+            } else if (intDistances != null) {
+                intDistances[c] = chunk.asIntBuffer();
+            } else {
+                floatDistances[c] = chunk.asFloatBuffer();
+            }
+        }
+        return new TriangularDistanceProvider(dimension, shortDistances, intDistances, floatDistances);
+    }
+
+    /**
+     * Maps part of the file.
+     *
+     * @param channel  The cache file.
+     * @param position Where the part starts.
+     * @param size     The size of the part in bytes, at most 2 GB.
+     * @return The mapped part.
+     * @throws IOException If the file cannot be mapped.
+     */
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Copies doubles out of the file, mapping it a chunk at a time.
+     *
+     * @param channel  The cache file.
+     * @param position Where the doubles start.
+     * @param values   Receives the doubles.
+     * @return The position of the next part of the file (aligned to 8 bytes).
+     * @throws IOException If the file cannot be mapped.
+     */
+    private static long readDoubles(FileChannel channel, long position, double[] values) throws IOException {
+        int perChunk = CHUNK_SIZE / 8;
+        for (int from = 0; from < values.length; from += perChunk) {
+            int count = Math.min(perChunk, values.length - from);
+            map(channel, position, 8L * count).asDoubleBuffer().get(values, from, count);
+            position += 8L * count;
+        }
+        return align(position);
+    }
+
+    /**
+     * Copies ints out of the file, like readDoubles.
+     *
+     * @param channel  The cache file.
+     * @param position Where the ints start.
+     * @param values   Receives the ints.
+     * @return The position of the next part of the file (aligned to 8 bytes).
+     * @throws IOException If the file cannot be mapped.
+     */
+    private static long readInts(FileChannel channel, long position, int[] values) throws IOException {
+        int perChunk = CHUNK_SIZE / 4;
+        for (int from = 0; from < values.length; from += perChunk) {
+            int count = Math.min(perChunk, values.length - from);
+            map(channel, position, 4L * count).asIntBuffer().get(values, from, count);
+            position += 4L * count;
+        }
+        return align(position);
+    }
+}
@@ -0,0 +1,365 @@
+import java.util.Arrays;
+
+/**
+ * 2-d tree over the coordinates of the cities, for nearest neighbour queries
+ * that look at O(log n) cities on average instead of scanning all of them. It is
+ * built in O(n log n) time and never changes afterwards, so one tree can be
+ * shared between threads.
+ *
+ * Every node covers a contiguous range of the cities array, is split at the
+ * median of the coordinate along which its cities are spread widest, and keeps
+ * the bounding box of its cities for pruning. Leaves hold up to BUCKET_SIZE
+ * cities. The nodes live in parallel arrays rather than objects.
+ *
+ * Nearest-unvisited queries, as needed to build a nearest neighbour tour, go
+ * through a Remaining object: the cities not yet visited, plus a count per node
+ * so that subtrees without remaining cities are skipped. Each tour being built
+ * needs its own Remaining.
+ *
+ * Distances are Euclidean; for edge weight types that round the Euclidean
+ * distance (see EdgeWeightType.preservesEuclideanOrder) the nearest cities are
+ * the same up to ties.
+ */
+public class KdTree {
+
+    private static final int BUCKET_SIZE = 8;
+
+    private double[] xCoords;
+    private double[] yCoords;
+    private int[] cities; // city ids, ordered so that every node covers a range
+    private int numNodes;
+    private int[] nodeStart; // first index into cities of the node
+    private int[] nodeEnd; // one past the last index into cities of the node
+    private int[] left; // -1 for a leaf
+    private int[] right;
+    private int[] parent; // -1 for the root
+    private boolean[] splitOnX;
+    private double[] splitValue;
+    private double[] minX;
+    private double[] maxX;
+    private double[] minY;
+    private double[] maxY;
+    private int[] leafOf; // the leaf every city is in
+
+    /**
+     * Builds the tree.
+     *
+     * @param xCoords The x coordinate of every city, indexed by city id.
+     * @param yCoords The y coordinate of every city, indexed by city id.
+     */
+    public KdTree(double[] xCoords, double[] yCoords) {
+        this.xCoords = xCoords;
+        this.yCoords = yCoords;
+        int numCities = xCoords.length;
+        this.cities = new int[numCities];
+        for (int i = 0; i < numCities; i++) {
+            this.cities[i] = i;
+        }
+
+        // leaves get at least BUCKET_SIZE / 2 cities, so this many nodes suffice
+        int maxNodes = 2 * (numCities / (BUCKET_SIZE / 2) + 1);
+        this.nodeStart = new int[maxNodes];
+        this.nodeEnd = new int[maxNodes];
+        this.left = new int[maxNodes];
+        this.right = new int[maxNodes];
+        this.parent = new int[maxNodes];
+        this.splitOnX = new boolean[maxNodes];
+        this.splitValue = new double[maxNodes];
+        this.minX = new double[maxNodes];
+        this.maxX = new double[maxNodes];
+        this.minY = new double[maxNodes];
+        this.maxY = new double[maxNodes];
+        this.leafOf = new int[numCities];
+
+        build(-1, 0, numCities);
+    }
+
+    /**
+     * Creates the node covering cities[start, end) and, recursively, its
+     * subtree.
+     *
+     * @param parentNode The parent of the node, -1 for the root.
+     * @param start      The first index into cities.
+     * @param end        One past the last index into cities.
+     * @return The node.
+     */
+    private int build(int parentNode, int start, int end) {
+        int node = this.numNodes++;
+        this.nodeStart[node] = start;
+        this.nodeEnd[node] = end;
+        this.parent[node] = parentNode;
+
+        double loX = Double.POSITIVE_INFINITY, hiX = Double.NEGATIVE_INFINITY;
+        double loY = Double.POSITIVE_INFINITY, hiY = Double.NEGATIVE_INFINITY;
+        for (int i = start; i < end; i++) {
+            int city = this.cities[i];
+            loX = Math.min(loX, this.xCoords[city]);
+            hiX = Math.max(hiX, this.xCoords[city]);
+            loY = Math.min(loY, this.yCoords[city]);
+            hiY = Math.max(hiY, this.yCoords[city]);
+        }
+        this.minX[node] = loX;
+        this.maxX[node] = hiX;
+        this.minY[node] = loY;
+        this.maxY[node] = hiY;
+
+        if (end - start <= BUCKET_SIZE) {
+            this.left[node] = -1;
+            this.right[node] = -1;
+            for (int i = start; i < end; i++) {
+                this.leafOf[this.cities[i]] = node;
+            }
+            return node;
+        }
+
+        boolean onX = hiX - loX >= hiY - loY;
+        int middle = (start + end) >>> 1;
+        select(start, end, middle, onX);
+        this.splitOnX[node] = onX;
+        this.splitValue[node] = coordinate(this.cities[middle], onX);
+        this.left[node] = build(node, start, middle);
+        this.right[node] = build(node, middle, end);
+        return node;
+    }
+
+    // the x or y coordinate of a city
+    private double coordinate(int city, boolean onX) {
+        return onX ? this.xCoords[city] : this.yCoords[city];
+    }
+
+    /**
+     * Reorders cities[start, end) so that the city at index nth is the one that
+     * would be there if the range were sorted by the coordinate, with no larger
+     * coordinates before it and no smaller ones after it (quickselect).
+     *
+     * @param start The first index of the range.
+     * @param end   One past the last index of the range.
+     * @param nth   The index to put in place.
+     * @param onX   Whether to order by x (or else by y).
+     */
+    private void select(int start, int end, int nth, boolean onX) {
+        int low = start;
+        int high = end - 1;
+        while (low < high) {
+            double pivot = coordinate(this.cities[(low + high) >>> 1], onX);
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (coordinate(this.cities[i], onX) < pivot) {
+                    i++;
+                }
+                while (coordinate(this.cities[j], onX) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = this.cities[i];
+                    this.cities[i] = this.cities[j];
+                    this.cities[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (nth <= j) {
+                high = j;
+            } else if (nth >= i) {
+                low = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    // squared distance between a point and the bounding box of a node (0 inside)
+    private double boxDistance(int node, double x, double y) {
+        double dx = Math.max(0.0, Math.max(this.minX[node] - x, x - this.maxX[node]));
+        double dy = Math.max(0.0, Math.max(this.minY[node] - y, y - this.maxY[node]));
+        return dx * dx + dy * dy;
+    }
+
+    // squared Euclidean distance between a point and a city
+    private double squaredDistance(double x, double y, int city) {
+        double dx = x - this.xCoords[city];
+        double dy = y - this.yCoords[city];
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Finds the k cities nearest to a city (not counting the city itself), sorted
+     * by increasing distance, equally distant cities by id.
+     *
+     * @param city             The city.
+     * @param k                The number of neighbours wanted.
+     * @param neighbours       Receives the ids of the neighbours, at least k long.
+     * @param squaredDistances Receives their squared Euclidean distances, at least
+     *                         k long.
+     * @return The number of neighbours found, k unless there are fewer other
+     *         cities.
+     */
+    public int findNearest(int city, int k, int[] neighbours, double[] squaredDistances) {
+        if (k <= 0) {
+            return 0;
+        }
+        return searchNearest(0, this.xCoords[city], this.yCoords[city], city, k, 0, neighbours, squaredDistances);
+    }
+
+    /**
+     * Adds the cities of a subtree to the k nearest found so far.
+     *
+     * @return The number of neighbours found so far.
+     */
+    private int searchNearest(int node, double x, double y, int exclude, int k, int found, int[] neighbours,
+            double[] squaredDistances) {
+        if (found == k && boxDistance(node, x, y) > squaredDistances[k - 1]) {
+            return found;
+        }
+
+        if (this.left[node] < 0) {
+            for (int i = this.nodeStart[node]; i < this.nodeEnd[node]; i++) {
+                int city = this.cities[i];
+                if (city == exclude) {
+                    continue;
+                }
+                double distance = squaredDistance(x, y, city);
+                if (found == k && (distance > squaredDistances[k - 1]
+                        || (distance == squaredDistances[k - 1] && city > neighbours[k - 1]))) {
+                    continue;
+                }
+                int slot = found < k ? found++ : k - 1;
+                while (slot > 0 && (squaredDistances[slot - 1] > distance
+                        || (squaredDistances[slot - 1] == distance && neighbours[slot - 1] > city))) {
+                    squaredDistances[slot] = squaredDistances[slot - 1];
+                    neighbours[slot] = neighbours[slot - 1];
+                    slot--;
+                }
+                squaredDistances[slot] = distance;
+                neighbours[slot] = city;
+            }
+            return found;
+        }
+
+        // the child on the side of the point first, it is the likelier to hold the nearest
+        boolean leftFirst = (this.splitOnX[node] ? x : y) < this.splitValue[node];
+        int first = leftFirst ? this.left[node] : this.right[node];
+        int second = leftFirst ? this.right[node] : this.left[node];
+        found = searchNearest(first, x, y, exclude, k, found, neighbours, squaredDistances);
+        return searchNearest(second, x, y, exclude, k, found, neighbours, squaredDistances);
+    }
+
+    /**
+     * Creates a set holding every city, for nearest-unvisited queries.
+     *
+     * @return The set.
+     */
+    public Remaining createRemaining() {
+        return new Remaining();
+    }
+
+    /**
+     * A set of cities of the tree that supports removal and finding the remaining
+     * city nearest to a point. Not thread safe; use one per tour being built.
+     */
+    public class Remaining {
+
+        private boolean[] removed;
+        private int[] counts; // the number of remaining cities per node
+        private int size;
+        private int bestCity;
+        private double bestDistance;
+
+        private Remaining() {
+            this.removed = new boolean[KdTree.this.cities.length];
+            this.counts = new int[KdTree.this.numNodes];
+            reset();
+        }
+
+        /**
+         * Getter for the tree the set belongs to.
+         *
+         * @return The tree.
+         */
+        public KdTree getTree() {
+            return KdTree.this;
+        }
+
+        /**
+         * Puts every city back into the set.
+         */
+        public void reset() {
+            Arrays.fill(this.removed, false);
+            for (int node = 0; node < KdTree.this.numNodes; node++) {
+                this.counts[node] = KdTree.this.nodeEnd[node] - KdTree.this.nodeStart[node];
+            }
+            this.size = this.removed.length;
+        }
+
+        /**
+         * Getter for the number of cities in the set.
+         *
+         * @return The number of remaining cities.
+         */
+        public int size() {
+            return this.size;
+        }
+
+        /**
+         * Whether a city is still in the set.
+         *
+         * @param city The city.
+         * @return True if it has not been removed.
+         */
+        public boolean contains(int city) {
+            return !this.removed[city];
+        }
+
+        /**
+         * Removes a city from the set. Takes O(log n) time.
+         *
+         * @param city The city, which must still be in the set.
+         */
+        public void remove(int city) {
+            this.removed[city] = true;
+            this.size--;
+            for (int node = KdTree.this.leafOf[city]; node >= 0; node = KdTree.this.parent[node]) {
+                this.counts[node]--;
+            }
+        }
+
+        /**
+         * Finds the remaining city nearest to a city, equally distant ones by id.
+         *
+         * @param city The city, which need not be in the set.
+         * @return The nearest remaining city, or -1 if the set is empty (or holds
+         *         nothing but city).
+         */
+        public int findNearest(int city) {
+            this.bestCity = -1;
+            this.bestDistance = Double.POSITIVE_INFINITY;
+            search(0, KdTree.this.xCoords[city], KdTree.this.yCoords[city], city);
+            return this.bestCity;
+        }
+
+        // looks for a nearer remaining city in a subtree
+        private void search(int node, double x, double y, int exclude) {
+            if (this.counts[node] == 0 || boxDistance(node, x, y) > this.bestDistance) {
+                return;
+            }
+            if (KdTree.this.left[node] < 0) {
+                for (int i = KdTree.this.nodeStart[node]; i < KdTree.this.nodeEnd[node]; i++) {
+                    int city = KdTree.this.cities[i];
+                    if (this.removed[city] || city == exclude) {
+                        continue;
+                    }
+                    double distance = squaredDistance(x, y, city);
+                    if (distance < this.bestDistance || (distance == this.bestDistance && city < this.bestCity)) {
+                        this.bestDistance = distance;
+                        this.bestCity = city;
+                    }
+                }
+                return;
+            }
+            boolean leftFirst = (KdTree.this.splitOnX[node] ? x : y) < KdTree.this.splitValue[node];
+            search(leftFirst ? KdTree.this.left[node] : KdTree.this.right[node], x, y, exclude);
+            search(leftFirst ? KdTree.this.right[node] : KdTree.this.left[node], x, y, exclude);
+        }
+    }
+}
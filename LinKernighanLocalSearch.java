@@ -0,0 +1,210 @@
+/**
+ * Lin-Kernighan style local search: sequential moves built from a chain of
+ * 2-opt moves that all share the first city t1 (an LK step), followed by Or-opt
+ * moves for the cities the LK steps could not improve.
+ *
+ * An LK step removes the edge (t1, t2) and repeatedly adds an edge from the free
+ * end t2 to one of its candidates t3, removes the edge (t3, t4) that lets the
+ * tour be closed again with (t4, t1), and continues from t4. The chain goes on
+ * while the gain of the open path stays positive, up to maxDepth moves; it is
+ * cut back to the point where closing the tour gained the most. The first
+ * levels try several candidates (BREADTH), deeper levels only the first one.
+ * With a depth of 3 this covers the sequential 3-opt moves.
+ *
+ * The tour is kept as an array with a position index (ArrayTour), and the
+ * candidate lists and don't-look bits are used the same way as in
+ * TwoOptLocalSearch. The search can be given a budget of improving moves and of
+ * time per tour; when either runs out the tour found so far is returned.
+ */
+public class LinKernighanLocalSearch extends TwoOptLocalSearch {
+
+    // number of candidates tried at the first levels of an LK step
+    private static final int[] BREADTH = { 5, 3, 1 };
+
+    private int maxDepth;
+    private int maxMoves;
+    private long maxNanos;
+    private ThreadLocal<LinKernighanStep> steps = new ThreadLocal<LinKernighanStep>();
+
+    /**
+     * LK style local search with a depth of 5 and no budgets.
+     *
+     * @param world The Environment the tours belong to.
+     */
+    public LinKernighanLocalSearch(Environment world) {
+        this(world, 5, Integer.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * LK style local search.
+     *
+     * @param world    The Environment the tours belong to.
+     * @param maxDepth The largest number of 2-opt moves in one LK step (at least
+     *                 1).
+     * @param maxMoves The largest number of improving moves applied to one tour.
+     * @param maxNanos The time budget for improving one tour, in nanoseconds.
+     */
+    public LinKernighanLocalSearch(Environment world, int maxDepth, int maxMoves, long maxNanos) {
+        super(world, true);
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be at least 1, got " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+        this.maxMoves = maxMoves;
+        this.maxNanos = maxNanos;
+    }
+
+    public double improve(int[] tour, double tourCost) {
+        if (tour.length < 8) {
+            return tourCost;
+        }
+        TourArrays arrays = getWorkingArrays(tour, tourCost);
+        LinKernighanStep step = this.steps.get();
+        if (step == null) {
+            step = new LinKernighanStep();
+            this.steps.set(step);
+        }
+
+        long deadline = this.maxNanos == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + this.maxNanos;
+        int movesLeft = this.maxMoves;
+
+        while (!arrays.queueIsEmpty() && movesLeft > 0) {
+            if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0) {
+                break;
+            }
+            int city = arrays.poll();
+
+            double gain = tryTwoOpt(arrays, city);
+            if (gain == 0.0) {
+                gain = tryLinKernighan(arrays, step, city);
+            }
+            if (gain == 0.0) {
+                gain = tryOrOpt(arrays, city);
+            }
+            if (gain > 0.0) {
+                movesLeft--;
+            }
+        }
+        return arrays.getCost();
+    }
+
+    /**
+     * Tries an LK step that starts by removing one of the two tour edges of t1,
+     * and applies the first improving one found.
+     *
+     * @param arrays The tour being improved.
+     * @param step   The calling thread's step state.
+     * @param t1     The city to look at.
+     * @return How much shorter the tour got (0 if no improving step was found).
+     */
+    private double tryLinKernighan(TourArrays arrays, LinKernighanStep step, int t1) {
+        for (int direction = 0; direction < 2; direction++) {
+            int t2 = direction == 0 ? arrays.next(t1) : arrays.previous(t1);
+            step.start(arrays, t1);
+            step.search(t2, this.world.getDistance(t1, t2), 0);
+
+            // cut the chain back to the move where closing the tour gained the most
+            while (step.numMoves > step.bestNumMoves) {
+                step.undo();
+            }
+            if (step.bestGain > 0.0) {
+                for (int i = 0; i < step.bestNumMoves * 4; i++) {
+                    arrays.activate(step.moves[i]);
+                }
+                return step.bestGain;
+            }
+        }
+        return 0.0;
+    }
+
+    /**
+     * The state of one LK step: the 2-opt moves applied so far and the best gain
+     * seen when closing the tour.
+     */
+    private class LinKernighanStep {
+
+        private TourArrays arrays;
+        private int[] moves;
+        private int t1;
+        private int numMoves;
+        private int bestNumMoves;
+        private double bestGain;
+
+        LinKernighanStep() {
+            this.moves = new int[4 * maxDepth];
+        }
+
+        // starts a new step from t1 on the given tour
+        void start(TourArrays arrays, int t1) {
+            this.arrays = arrays;
+            this.t1 = t1;
+            this.numMoves = 0;
+            this.bestNumMoves = 0;
+            this.bestGain = 0.0;
+        }
+
+        /**
+         * Extends the chain from the free end t2 (which is a tour neighbour of t1).
+         * Returns as soon as an improvement has been found, leaving the moves
+         * applied.
+         */
+        void search(int t2, double openGain, int depth) {
+            int breadth = depth < BREADTH.length ? BREADTH[depth] : 1;
+            boolean t2Follows = this.arrays.next(this.t1) == t2;
+            int[] candidates = world.getCandidateList(t2);
+
+            int tried = 0;
+            for (int i = 0; i < candidates.length && tried < breadth; i++) {
+                int t3 = candidates[i];
+                double gain = openGain - world.getDistance(t2, t3);
+                if (gain <= EPSILON) {
+                    break;
+                }
+                int t4 = t2Follows ? this.arrays.previous(t3) : this.arrays.next(t3);
+                if (t3 == this.t1 || t4 == t2) {
+                    continue;
+                }
+                tried++;
+
+                // remove (t1, t2) and (t3, t4), add (t2, t3) and (t4, t1)
+                apply(t2, t1, t3, t4);
+                double removedT3T4 = world.getDistance(t3, t4);
+                double closedGain = gain + removedT3T4 - world.getDistance(t4, this.t1);
+                if (closedGain > this.bestGain + EPSILON) {
+                    this.bestGain = closedGain;
+                    this.bestNumMoves = this.numMoves;
+                }
+
+                if (depth + 1 < maxDepth) {
+                    search(t4, gain + removedT3T4, depth + 1);
+                }
+                if (this.bestGain > 0.0) {
+                    return;
+                }
+                undo();
+            }
+        }
+
+        // adds {a, c} and {b, d} in place of {a, b} and {c, d}
+        void apply(int a, int b, int c, int d) {
+            this.arrays.twoOptMove(a, b, c, d);
+            int offset = 4 * this.numMoves;
+            this.moves[offset] = a;
+            this.moves[offset + 1] = b;
+            this.moves[offset + 2] = c;
+            this.moves[offset + 3] = d;
+            this.numMoves++;
+        }
+
+        // takes back the last move
+        void undo() {
+            this.numMoves--;
+            int offset = 4 * this.numMoves;
+            int a = this.moves[offset];
+            int b = this.moves[offset + 1];
+            int c = this.moves[offset + 2];
+            int d = this.moves[offset + 3];
+            this.arrays.twoOptMove(a, c, b, d);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+/**
+ * An improvement step applied to the tours the ants construct.
+ */
+public interface LocalSearch {
+
+    /**
+     * Improves a tour in place.
+     * 
+     * @param tour     The tour, i.e. a permutation of the city ids.
+     * @param tourCost The cost of the tour.
+     * @return The cost of the improved tour.
+     */
+    double improve(int[] tour, double tourCost);
+}
@@ -0,0 +1,20 @@
+/**
+ * Which tours of an iteration the local search is applied to.
+ */
+public enum LocalSearchScope {
+
+    /**
+     * Every tour, right after the ant has constructed it.
+     */
+    ALL_ANTS,
+
+    /**
+     * Only the best tour of each iteration.
+     */
+    ITERATION_BEST,
+
+    /**
+     * Only the best tour found so far, whenever it changes.
+     */
+    GLOBAL_BEST
+}
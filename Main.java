@@ -1,64 +1,58 @@
-import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
-import java.io.BufferedReader;
-import java.io.Reader;
-import java.util.List;
-
 import java.util.ArrayList;
+import java.util.List;
 
 public class Main {
-    public static void main(String[] args) {
-        String data = null;
-        int dimension = 0;
-        String edgeWeightType = "";
-        List<City> cities = new ArrayList<City>();
-        String filename = "d2103.tsp";
-
-        try {
-            File initialFile = new File(filename);
-            initialFile.createNewFile();
-
-            Reader reader = new FileReader(initialFile);
-
-            BufferedReader buffReader = new BufferedReader(reader);
 
-            boolean first = true;
-            int counter = 1;
-
-            while ((data = buffReader.readLine()) != null) {
-                City city;
-                if (first) {
-                    if (data.contains("EDGE_WEIGHT_TYPE")) {
-                        edgeWeightType = data.split(" ")[1];
-                    } else if (data.contains("DIMENSION")) {
-                        dimension = Integer.parseInt(data.replace(" ", "").split(":")[1]);
-                    } else if (data.contains("NODE_COORD_SECTION")) {
-                        first = false;
-                    }
-                } else {
-                    if (counter <= dimension) {
-                        String[] temp = data.trim().replace("  ", " ").replace("  ", " ").split(" ");
-                        double xCoord = Double.parseDouble(temp[1].trim());
-                        double yCoord = Double.parseDouble(temp[2].trim());
-                        city = new City(counter, xCoord, yCoord);
-                        cities.add(city);
-                        counter++;
-                    }
-                }
+    /**
+     * Runs one solver on a problem and prints its progress.
+     *
+     * @param args The problem file (d2103.tsp by default) and the solver: eas (the
+     *             default), acs, mmas, rank, or islands for one ACS colony per
+     *             core exchanging their best tours.
+     */
+    public static void main(String[] args) {
+        String filename = args.length > 0 ? args[0] : "d2103.tsp";
+        String solver = args.length > 1 ? args[1] : "eas";
+        TsplibInstance instance = TestingSuite.getInstance(filename);
+        List<City> cities = instance.getCityList();
+
+        if (solver.equals("islands")) {
+            // one ACS colony per core on a single copy of the distances
+            List<AntColonyOptimizer> colonies = new ArrayList<AntColonyOptimizer>();
+            for (int c = 0; c < Runtime.getRuntime().availableProcessors(); c++) {
+                AntColonySystem colony = new AntColonySystem(createEnvironment(instance), cities, 100);
+                colony.setSeed(c);
+                colonies.add(colony);
             }
-
-            buffReader.close();
-        } catch (IOException e) {
-            System.out.println("IO Exception");
+            colonies.get(0).addListener(new ConsoleListener());
+            MultiColonyOptimizer islands = new MultiColonyOptimizer(colonies, 10);
+            islands.optimize();
+            System.out.println("Best of all colonies: " + islands.getBestCost());
+            return;
         }
 
-        Environment env = new Environment(cities.size(), 30, 1, 3, 0.1, 0.1, 0.1, 0.1, 0.9);
-
-        AntColonySystem acs = new AntColonySystem(env, cities, 100);
-        //acs.optimize();
+        Environment env = createEnvironment(instance);
+        AntColonyOptimizer optimizer;
+        if (solver.equals("acs")) {
+            optimizer = new AntColonySystem(env, cities, 100);
+        } else if (solver.equals("mmas")) {
+            optimizer = new MaxMinAntSystem(env, cities, 100);
+        } else if (solver.equals("rank")) {
+            optimizer = new AntSystemRank(env, cities, 100);
+        } else if (solver.equals("eas")) {
+            optimizer = new ElitistAntSystem(env, cities, 100);
+        } else {
+            throw new IllegalArgumentException("Unknown solver " + solver + ", expected eas, acs, mmas, rank or islands");
+        }
+        optimizer.addListener(new ConsoleListener());
+        optimizer.optimize();
+    }
 
-        ElitistAntSystem eas = new ElitistAntSystem(env, cities, 100);
-        eas.optimize();
+    // the parameters all the solvers of main run with
+    private static Environment createEnvironment(TsplibInstance instance) {
+        Environment env = new Environment(instance.getDimension(), 30, 1, 3, 0.1, 0.1, 0.1, 0.1, 0.9);
+        env.setCandidateListSize(20);
+        env.setProblem(instance);
+        return env;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,54 @@
+import java.util.List;
+
+/**
+ * DistanceProvider that precomputes every distance into a dense, symmetric
+ * adjacency matrix.
+ */
+public class MatrixDistanceProvider implements DistanceProvider {
+
+    private double[][] distances;
+
+    /**
+     * Calculates the distance between every pair of cities and populates the
+     * matrix at (i, j) and (j, i) because our implementation of TSP is symmetric.
+     * 
+     * @param cityList       A list object holding all the City objects.
+     * @param edgeWeightType How the distance between two cities is computed.
+     */
+    public MatrixDistanceProvider(List<City> cityList, EdgeWeightType edgeWeightType) {
+        int numCities = cityList.size();
+        this.distances = new double[numCities][numCities];
+
+        for (int i = 0; i < numCities; i++) {
+            City currentCity = cityList.get(i);
+            double currentX = currentCity.getXCoord();
+            double currentY = currentCity.getYCoord();
+
+            for (int j = i + 1; j < numCities; j++) {
+                City comparingCity = cityList.get(j);
+                double distance = edgeWeightType.distance(currentX, currentY, comparingCity.getXCoord(),
+                        comparingCity.getYCoord());
+
+                this.distances[i][j] = distance;
+                this.distances[j][i] = distance;
+            }
+        }
+    }
+
+    public double getDistance(int city1, int city2) {
+        return this.distances[city1][city2];
+    }
+
+    public int getNumCities() {
+        return this.distances.length;
+    }
+
+    /**
+     * Getter for the underlying adjacency matrix.
+     * 
+     * @return The distance adjacency matrix.
+     */
+    public double[][] getMatrix() {
+        return this.distances;
+    }
+}
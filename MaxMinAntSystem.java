@@ -0,0 +1,208 @@
+import java.util.List;
+import java.util.ArrayList;
+
+/**
+ * MAX-MIN Ant System (Stuetzle and Hoos). The ants build their tours with the
+ * random proportional rule, as in EAS, but only one ant deposits pheromones per
+ * iteration and the pheromones are kept between the trail limits tauMin and
+ * tauMax:
+ * 
+ * - tauMax = 1 / (rho * cost(bestTourSoFar)), and the pheromones start at
+ * tauMax (computed from the greedy tour).
+ * - tauMin = tauMax * (1 - pBest^(1/n)) / (avg * pBest^(1/n)), where avg is
+ * half the number of choices an ant has per step, or tauMax / 2n with local
+ * search.
+ * - Most iterations the iteration best deposits; every globalBestInterval-th
+ * iteration the best tour since the last restart does. With local search the
+ * interval shrinks from 25 to 1 as the run goes on.
+ * - Every 100 iterations the lambda-branching factor is checked, and if the
+ * trails have converged and the best tour since the last restart has not
+ * improved for 250 iterations, the pheromones are reinitialized to tauMax.
+ * 
+ * With candidate lists the global update costs O(n * k) (see
+ * Environment.maxMinGlobalUpdate).
+ */
+public class MaxMinAntSystem extends AntColonyOptimizer {
+
+    private static final double P_BEST = 0.05; // probability of constructing the best tour once converged
+    private static final double LAMBDA = 0.05; // for the lambda-branching factor
+    private static final double STAGNATION_BRANCHING_FACTOR = 1.00001;
+    private static final int STAGNATION_CHECK_INTERVAL = 100;
+    private static final int RESTART_AFTER = 250; // iterations without improvement since the last restart
+
+    private double tauMin;
+    private double tauMax;
+
+    /**
+     * Constructor for the instance of the MaxMinAntSystem algorithm. Will run
+     * optimize to optimize the algorithm.
+     * 
+     * @param env           The Environment instance we will be operating within.
+     * @param cityList      The list of City objects (i.e. problem information we
+     *                      read in).
+     * @param numIterations The number of iterations we would like the algorithm
+     *                      to run for.
+     */
+    public MaxMinAntSystem(Environment env, List<City> cityList, int numIterations) {
+        super(env, cityList, numIterations);
+    }
+
+    /**
+     * Performs the necessary optimization steps for MAX-MIN Ant System.
+     * 
+     * @return A list of the bestScores every 10 iterations (used to analyze our
+     *         tests).
+     */
+    public List<Double> optimize() {
+        // start the clock of the stopping criteria, the best tour so far is copied
+        // into bestAnt's buffer
+        Ant bestAnt = this.startRun();
+
+        // initialize the distances adjacency matrix
+        this.env.calculateDistances(cityList);
+
+        // restrict tour construction to the k nearest neighbours (if enabled)
+        this.env.buildCandidateLists();
+
+        // the trail limits start from the nearest neighbour tour, and the pheromones at tauMax
+        Ant greedyAnt = this.constructGreedyTour();
+        this.updateTrailLimits(greedyAnt.getTotalCost());
+        this.env.setInitialPheromones(this.tauMax);
+
+        // set the environment ant list
+        this.env.setAntList(this.createRandom());
+
+        List<Ant> antList = this.env.getAntList();
+        List<Double> bests = new ArrayList<Double>();
+
+        // the best tour since the last restart is copied into restartBestAnt's buffer
+        Ant restartBestAnt = new Ant(-1, this.env);
+        double restartBest = Double.POSITIVE_INFINITY;
+        int restartBestIteration = 0;
+        int restartIteration = 0;
+
+        // possibly start from the nearest neighbour tour
+        int i = 0;
+        double bestSoFar = this.startFromGreedyTour(bestAnt, greedyAnt);
+        if (bestSoFar < greedyAnt.getTotalCost()) {
+            this.updateTrailLimits(bestSoFar);
+        }
+
+        try {
+            while (i < this.numIterations) {
+
+                // have each ant construct a tour and improve it, depending on the local search
+                this.constructTours(antList, 0, this.withLocalSearch(Ant::makeElitistProbTour));
+                this.improveIterationBest(antList, 0);
+
+                Ant iterationBest = antList.get(0);
+                for (int j = 1; j < antList.size(); j++) {
+                    if (antList.get(j).getTotalCost() < iterationBest.getTotalCost()) {
+                        iterationBest = antList.get(j);
+                    }
+                }
+
+                // the new best tour (possibly improved further) also counts for this restart
+                Ant newBestAnt = iterationBest;
+                if (iterationBest.getTotalCost() < bestSoFar) {
+                    bestAnt.copyTour(iterationBest);
+                    bestSoFar = this.improveGlobalBest(bestAnt);
+                    this.notifyBestImproved(bestAnt, i);
+                    this.updateTrailLimits(bestSoFar);
+                    newBestAnt = bestAnt;
+                }
+                if (newBestAnt.getTotalCost() < restartBest) {
+                    restartBestAnt.copyTour(newBestAnt);
+                    restartBest = newBestAnt.getTotalCost();
+                    restartBestIteration = i;
+                }
+
+                // the time limit or the target was reached while the ants were building tours,
+                // the best tour so far includes the ants that did build one
+                if (this.isStopped()) {
+                    break;
+                }
+
+                // either the iteration best or the best since the last restart deposits
+                boolean globalBestTurn = (i - restartIteration) % this.globalBestInterval(i - restartIteration) == 0;
+                Ant depositAnt = globalBestTurn ? restartBestAnt : iterationBest;
+                this.env.maxMinGlobalUpdate(depositAnt, this.tauMin, this.tauMax);
+
+                // reinitialize the trails if the colony has stagnated
+                if (i % STAGNATION_CHECK_INTERVAL == 0 && i - restartBestIteration > RESTART_AFTER
+                        && this.env.getBranchingFactor(LAMBDA) < STAGNATION_BRANCHING_FACTOR) {
+                    this.env.resetPheromones(this.tauMax);
+                    restartBest = Double.POSITIVE_INFINITY;
+                    restartBestIteration = i;
+                    restartIteration = i;
+                }
+
+                this.notifyIterationCompleted(i, bestSoFar);
+                i++;
+
+                // take over the best tour of the other colonies, if there are any and it is shorter
+                double ownBest = bestSoFar;
+                bestSoFar = this.exchangeBestTour(bestAnt, bestSoFar, i);
+                if (bestSoFar < ownBest) {
+                    this.updateTrailLimits(bestSoFar);
+                }
+
+                if (i % 10 == 0) {
+                    bests.add(bestSoFar);
+                }
+
+                if (this.shouldStop(i, bestSoFar)) {
+                    break;
+                }
+            }
+        } finally {
+            this.shutdown();
+        }
+        return bests;
+    }
+
+    /**
+     * Recomputes the trail limits from the cost of the best tour so far.
+     * 
+     * @param bestCost The cost of the best tour so far.
+     */
+    private void updateTrailLimits(double bestCost) {
+        int numCities = this.env.getNumCities();
+        this.tauMax = 1.0 / (this.env.getEvaporationRate() * bestCost);
+
+        if (this.hasLocalSearch()) {
+            this.tauMin = this.tauMax / (2.0 * numCities);
+        } else {
+            int choices = this.env.getCandidateListSize() > 0
+                    ? Math.min(this.env.getCandidateListSize(), numCities - 1)
+                    : numCities - 1;
+            double average = (choices + 1) / 2.0;
+            double pDecision = Math.pow(P_BEST, 1.0 / numCities);
+            this.tauMin = this.tauMax * (1.0 - pDecision) / (average * pDecision);
+        }
+        this.tauMin = Math.min(this.tauMin, this.tauMax);
+    }
+
+    /**
+     * How often the best tour since the last restart deposits instead of the
+     * iteration best. Without local search it is every 25th iteration; with local
+     * search it gets more frequent the longer the restart has been running, as in
+     * the schedule of Stuetzle and Hoos.
+     * 
+     * @param iterationsSinceRestart The number of iterations since the last
+     *                               restart.
+     * @return The interval, in iterations.
+     */
+    private int globalBestInterval(int iterationsSinceRestart) {
+        if (!this.hasLocalSearch() || iterationsSinceRestart < 25) {
+            return 25;
+        } else if (iterationsSinceRestart < 75) {
+            return 5;
+        } else if (iterationsSinceRestart < 125) {
+            return 3;
+        } else if (iterationsSinceRestart < 250) {
+            return 2;
+        }
+        return 1;
+    }
+}
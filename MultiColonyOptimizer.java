@@ -0,0 +1,201 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Phaser;
+
+/**
+ * Island model: runs several ant colonies (e.g. AntColonySystem or
+ * ElitistAntSystem solvers) on the same problem at the same time, each on its
+ * own thread, and every migrationInterval iterations lets each colony take over
+ * the best tour of all colonies if it is shorter than its own.
+ *
+ * Every colony has its own Environment, so its own pheromones and ants, but the
+ * distances, spatial index and candidate lists are built once, by the first
+ * colony's Environment, and shared by all of them (see
+ * Environment.shareProblem). A problem with a full distance matrix therefore
+ * takes its n^2 memory once, not once per colony.
+ *
+ * The exchange is synchronous: a colony that is due to migrate waits until
+ * every colony still running has done as many iterations. Colonies with the
+ * same seeds thus find the same tours from run to run, however the threads are
+ * scheduled. A colony whose run ends (stopping criteria, or its number of
+ * iterations) drops out of the exchanges and the others carry on without it.
+ * The colonies usually build their tours on one thread each (the default of
+ * setNumThreads), with as many colonies as there are cores.
+ */
+public class MultiColonyOptimizer {
+
+    private List<AntColonyOptimizer> colonies;
+    private int migrationInterval;
+    private Phaser migrations; // one phase per exchange, the running colonies are its parties
+    private Ant[][] emigrants; // the best tours published in an exchange, by phase parity and colony
+
+    /**
+     * Creates an island model over the given colonies.
+     *
+     * @param colonies          The colonies, each with its own Environment for
+     *                          the same problem.
+     * @param migrationInterval The number of iterations between exchanges of the
+     *                          best tours, at least 1.
+     */
+    public MultiColonyOptimizer(List<AntColonyOptimizer> colonies, int migrationInterval) {
+        if (colonies.isEmpty()) {
+            throw new IllegalArgumentException("At least one colony is needed");
+        }
+        if (migrationInterval < 1) {
+            throw new IllegalArgumentException("migrationInterval must be at least 1");
+        }
+        for (int c = 0; c < colonies.size(); c++) {
+            for (int other = 0; other < c; other++) {
+                if (colonies.get(c).env == colonies.get(other).env) {
+                    throw new IllegalArgumentException("Every colony needs its own Environment");
+                }
+            }
+        }
+        this.colonies = new ArrayList<AntColonyOptimizer>(colonies);
+        this.migrationInterval = migrationInterval;
+    }
+
+    /**
+     * Runs all colonies until each of them is done, with the first colony's
+     * Environment setting up the distances and candidate lists for all of them.
+     *
+     * @return The bests lists of the colonies' optimize, in the order of the
+     *         colonies.
+     */
+    public List<List<Double>> optimize() {
+        int numColonies = this.colonies.size();
+
+        // the first colony builds the read-only structures, the others (and the first colony's
+        // own optimize) reuse them
+        AntColonyOptimizer first = this.colonies.get(0);
+        first.env.calculateDistances(first.cityList);
+        first.env.buildCandidateLists();
+        for (AntColonyOptimizer colony : this.colonies) {
+            colony.env.shareProblem(first.env);
+        }
+
+        // a colony writes to one buffer while the slowest one may still be reading the other
+        this.emigrants = new Ant[2][numColonies];
+        for (int c = 0; c < numColonies; c++) {
+            this.emigrants[0][c] = new Ant(-1, first.env);
+            this.emigrants[1][c] = new Ant(-1, first.env);
+        }
+        this.migrations = new Phaser(numColonies);
+
+        List<Callable<List<Double>>> tasks = new ArrayList<Callable<List<Double>>>();
+        for (int c = 0; c < numColonies; c++) {
+            final AntColonyOptimizer colony = this.colonies.get(c);
+            colony.joinColonies(this, c);
+            tasks.add(() -> {
+                try {
+                    return colony.optimize();
+                } finally {
+                    // the other colonies no longer wait for this one
+                    this.migrations.arriveAndDeregister();
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(numColonies);
+        List<List<Double>> bests = new ArrayList<List<Double>>();
+        try {
+            for (Future<List<Double>> future : executor.invokeAll(tasks)) {
+                bests.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running the colonies", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("A colony failed", e.getCause());
+        } finally {
+            executor.shutdown();
+            for (AntColonyOptimizer colony : this.colonies) {
+                colony.joinColonies(null, 0);
+            }
+        }
+        return bests;
+    }
+
+    /**
+     * Publishes a colony's best tour, waits until every running colony has
+     * published its own, and copies the shortest of them into the colony's best
+     * ant if it is shorter than the colony's tour. Called by
+     * AntColonyOptimizer.exchangeBestTour on the colony's thread.
+     *
+     * @param colonyIndex The index of the colony.
+     * @param bestAnt     The ant holding the colony's best tour so far.
+     * @return True if the colony took over another colony's tour.
+     */
+    boolean exchangeBestTour(int colonyIndex, Ant bestAnt) {
+        // the phase cannot advance before this colony arrives
+        Ant[] published = this.emigrants[this.migrations.getPhase() & 1];
+        published[colonyIndex].copyTour(bestAnt);
+        this.migrations.arriveAndAwaitAdvance();
+
+        // colonies that dropped out left an older, no better, tour in their slot
+        Ant best = published[0];
+        for (int c = 1; c < published.length; c++) {
+            if (published[c].getTotalCost() < best.getTotalCost()) {
+                best = published[c];
+            }
+        }
+        if (best.getTotalCost() < bestAnt.getTotalCost()) {
+            bestAnt.copyTour(best);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Getter for the number of iterations between exchanges.
+     *
+     * @return The migration interval.
+     */
+    public int getMigrationInterval() {
+        return this.migrationInterval;
+    }
+
+    /**
+     * Getter for the colonies.
+     *
+     * @return The colonies, in the order they were given.
+     */
+    public List<AntColonyOptimizer> getColonies() {
+        return this.colonies;
+    }
+
+    /**
+     * Getter for the best tour of all colonies in the last run. It is the buffer
+     * of the colony that found it.
+     *
+     * @return The best tour, or null if optimize has not been called.
+     */
+    public int[] getBestTour() {
+        return this.getBestColony().getBestTour();
+    }
+
+    /**
+     * Getter for the cost of the best tour of all colonies in the last run.
+     *
+     * @return The cost of the best tour (infinite if there is none).
+     */
+    public double getBestCost() {
+        return this.getBestColony().getBestCost();
+    }
+
+    // the colony with the shortest best tour, the first one on ties
+    private AntColonyOptimizer getBestColony() {
+        AntColonyOptimizer best = this.colonies.get(0);
+        for (int c = 1; c < this.colonies.size(); c++) {
+            if (this.colonies.get(c).getBestCost() < best.getBestCost()) {
+                best = this.colonies.get(c);
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * Receives the progress of an AntColonyOptimizer run as it happens. The methods
+ * are called on the thread that runs optimize, between iterations, so they
+ * should return quickly; a listener that does I/O or pushes results elsewhere
+ * should hand the work off.
+ */
+public interface OptimizationListener {
+
+    /**
+     * Called whenever the best tour so far improves.
+     * 
+     * @param tour         The new best tour. This is the solver's own buffer, which
+     *                     is overwritten by later improvements, so it has to be
+     *                     copied if it is kept.
+     * @param cost         The cost of the tour.
+     * @param iteration    The iteration it was found in (counting from 0).
+     * @param elapsedNanos The time since optimize was called, in nanoseconds.
+     */
+    void bestImproved(int[] tour, double cost, int iteration, long elapsedNanos);
+
+    /**
+     * Called at the end of every completed iteration. Does nothing by default.
+     * 
+     * @param iteration    The iteration that was completed (counting from 0).
+     * @param bestCost     The cost of the best tour so far.
+     * @param elapsedNanos The time since optimize was called, in nanoseconds.
+     */
+    default void iterationCompleted(int iteration, double bestCost, long elapsedNanos) {
+    }
+}
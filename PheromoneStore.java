@@ -0,0 +1,64 @@
+/**
+ * Holds the pheromone concentration on the edges of the graph. All updates are
+ * symmetric, i.e. changing edge (i, j) also changes edge (j, i).
+ */
+public interface PheromoneStore {
+
+    /**
+     * Get the pheromones on the edge between two cities.
+     * 
+     * @param city1 The id of city1.
+     * @param city2 The id of city2.
+     * @return The pheromones on the edge between city1 and city2.
+     */
+    double get(int city1, int city2);
+
+    /**
+     * Get the pheromones on the edge between a city and one of its candidates.
+     * 
+     * @param cityId The id of the city.
+     * @param slot   The position of the candidate in the candidate list of cityId.
+     * @return The pheromones on the edge between cityId and its candidate.
+     */
+    double getCandidate(int cityId, int slot);
+
+    /**
+     * Set the pheromones on the edge between two cities.
+     * 
+     * @param city1 The id of city1.
+     * @param city2 The id of city2.
+     * @param value The new pheromone content of the edge.
+     */
+    void set(int city1, int city2, double value);
+
+    /**
+     * Add pheromones to the edge between two cities.
+     * 
+     * @param city1  The id of city1.
+     * @param city2  The id of city2.
+     * @param amount The amount of pheromones to deposit.
+     */
+    void deposit(int city1, int city2, double amount);
+
+    /**
+     * Multiply the pheromones on every edge by the same factor.
+     * 
+     * @param factor The factor, e.g. (1 - rho) for evaporation.
+     */
+    void evaporate(double factor);
+
+    /**
+     * Set the pheromones on every edge to the same value.
+     * 
+     * @param value The pheromone content of every edge.
+     */
+    void fill(double value);
+
+    /**
+     * Limit the pheromones on every edge to the range [min, max].
+     * 
+     * @param min The lowest pheromone content an edge may have.
+     * @param max The highest pheromone content an edge may have.
+     */
+    void clamp(double min, double max);
+}
@@ -1,11 +1,7 @@
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Collections;
-import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.BufferedReader;
-import java.io.Reader;
 
 public class TestingSuite {
 
@@ -22,6 +18,10 @@ public class TestingSuite {
 	private static double epsilon = 0.1; // decay coefficient
 	private static double eliteNum = antNumBig;
 	private static double qNot = 0.9;
+	private static int candidateListSize = 20; // nearest neighbours per city
+	private static long seed = 42; // run i of a test uses seed + i
+
+	private int numThreads; // tour construction threads per run, 1 for the sequential algorithms
 
 	private String twoKTest;
 	private String threeKTest;
@@ -30,9 +30,22 @@ public class TestingSuite {
 
 	/**
 	 * Constructor, which instantiates the particular problems we want to test our
-	 * algorithm on.
+	 * algorithm on. The ants build their tours one after the other, so the
+	 * results are those of the sequential algorithms on any machine.
 	 */
 	public TestingSuite() {
+		this(1);
+	}
+
+	/**
+	 * Same as TestingSuite(), but with the ants building their tours on several
+	 * threads. Note that ACS then defers its local pheromone updates to the end of
+	 * each iteration, so its results differ from those of the sequential runs.
+	 * 
+	 * @param numThreads The number of tour construction threads per run.
+	 */
+	public TestingSuite(int numThreads) {
+		this.numThreads = numThreads;
 
 		this.twoKTest = "d2103.tsp";
 		this.threeKTest = "pcb3038.tsp";
@@ -47,48 +60,44 @@ public class TestingSuite {
 	 * @return A list of City objects (i.e. our problem information)
 	 */
 	public static List<City> getCityList(String filename) {
-		String data = null;
-		int dimension = 0;
-		String edgeWeightType = "";
-		List<City> cities = new ArrayList<City>();
+		try {
+			return TsplibReader.read(filename).getCityList();
+		} catch (IOException e) {
+			System.out.println("IO Exception");
+			return new ArrayList<City>();
+		}
+	}
 
+	/**
+	 * Helper method to read in a problem with its edge weight type, for
+	 * Environment.setProblem. The problem comes from the InstanceCache with its
+	 * candidate lists and distance triangle, so after the first run neither the
+	 * file is parsed nor the distances are computed.
+	 * 
+	 * @param filename The name of the file we want to read in.
+	 * @return The problem, without any cities if the file could not be read.
+	 */
+	public static TsplibInstance getInstance(String filename) {
 		try {
-			File initialFile = new File(filename);
-			initialFile.createNewFile();
-
-			Reader reader = new FileReader(initialFile);
-
-			BufferedReader buffReader = new BufferedReader(reader);
-
-			boolean first = true;
-			int counter = 1;
-
-			while ((data = buffReader.readLine()) != null) {
-				City city;
-				if (first) {
-					if (data.contains("EDGE_WEIGHT_TYPE")) {
-						edgeWeightType = data.split(" ")[1];
-					} else if (data.contains("DIMENSION")) {
-						dimension = Integer.parseInt(data.replace(" ", "").split(":")[1]);
-					} else if (data.contains("NODE_COORD_SECTION")) {
-						first = false;
-					}
-				} else {
-					if (counter <= dimension) {
-						String[] temp = data.trim().replace("  ", " ").replace("  ", " ").split(" ");
-						double xCoord = Double.parseDouble(temp[1].trim());
-						double yCoord = Double.parseDouble(temp[2].trim());
-						city = new City(counter, xCoord, yCoord);
-						cities.add(city);
-						counter++;
-					}
-				}
-			}
-			buffReader.close();
+			return InstanceCache.load(filename, candidateListSize, true);
 		} catch (IOException e) {
 			System.out.println("IO Exception");
+			return new TsplibInstance(filename, "", "", 0, "EUC_2D", "", new double[0], new double[0], null);
 		}
-		return cities;
+	}
+
+	/**
+	 * Sets the seed and the number of threads of run i of a test. The two go
+	 * together: a run is only reproducible with the same seed and the same
+	 * sequential or parallel mode, since ACS defers its local updates when it
+	 * runs on more than one thread.
+	 * 
+	 * @param optimizer The algorithm about to be run.
+	 * @param run       The index of the run within its test.
+	 */
+	private void configureRun(AntColonyOptimizer optimizer, int run) {
+		optimizer.setNumThreads(this.numThreads);
+		optimizer.setSeed(seed + run);
 	}
 
 	/***********************************
@@ -118,7 +127,8 @@ public class TestingSuite {
 	// run both ACS and EAS for the 2k problem size
 	public void runTwoThousands() {
 
-		List<City> cities = getCityList(this.twoKTest);
+		TsplibInstance instance = getInstance(this.twoKTest);
+		List<City> cities = instance.getCityList();
 		System.out.println(cities.size());
 		List<List<Double>> acsList = new ArrayList<List<Double>>();
 		List<List<Double>> easList = new ArrayList<List<Double>>();
@@ -127,7 +137,10 @@ public class TestingSuite {
 			List<Double> bests = new ArrayList<Double>();
 			Environment env = new Environment(cities.size(), antNumBig, alpha, betaBig, rho, eliteNum, epsilon, 0.1,
 					qNot);
+			env.setCandidateListSize(candidateListSize);
+			env.setProblem(instance);
 			AntColonySystem acs = new AntColonySystem(env, cities, 50);
+			this.configureRun(acs, i);
 			bests = acs.optimize();
 			acsList.add(bests);
 		}
@@ -136,7 +149,10 @@ public class TestingSuite {
 			List<Double> bests = new ArrayList<Double>();
 			Environment env = new Environment(cities.size(), antNumBig, alpha, betaBig, rho, eliteNum, epsilon, 0.1,
 					qNot);
+			env.setCandidateListSize(candidateListSize);
+			env.setProblem(instance);
 			ElitistAntSystem eas = new ElitistAntSystem(env, cities, 50);
+			this.configureRun(eas, i);
 			bests = eas.optimize();
 			easList.add(bests);
 		}
@@ -158,7 +174,8 @@ public class TestingSuite {
 
 	// run both ACS and EAS for the 3k problem size
 	public void runThreeThousands() {
-		List<City> cities = getCityList(this.threeKTest);
+		TsplibInstance instance = getInstance(this.threeKTest);
+		List<City> cities = instance.getCityList();
 		List<List<Double>> acsList = new ArrayList<List<Double>>();
 		List<List<Double>> easList = new ArrayList<List<Double>>();
 
@@ -166,7 +183,10 @@ public class TestingSuite {
 			List<Double> bests = new ArrayList<Double>();
 			Environment env = new Environment(cities.size(), antNumBig, alpha, betaBig, rho, eliteNum, epsilon, 0.1,
 					qNot);
+			env.setCandidateListSize(candidateListSize);
+			env.setProblem(instance);
 			AntColonySystem acs = new AntColonySystem(env, cities, 50);
+			this.configureRun(acs, i);
 			bests = acs.optimize();
 			acsList.add(bests);
 		}
@@ -175,7 +195,10 @@ public class TestingSuite {
 			List<Double> bests = new ArrayList<Double>();
 			Environment env = new Environment(cities.size(), antNumBig, alpha, betaBig, rho, eliteNum, epsilon, 0.1,
 					qNot);
+			env.setCandidateListSize(candidateListSize);
+			env.setProblem(instance);
 			ElitistAntSystem eas = new ElitistAntSystem(env, cities, 50);
+			this.configureRun(eas, i);
 			bests = eas.optimize();
 			easList.add(bests);
 		}
@@ -197,7 +220,8 @@ public class TestingSuite {
 
 	// run both ACS and EAS for the 4k problem size
 	public void runFourThousands() {
-		List<City> cities = getCityList(this.fourKTest);
+		TsplibInstance instance = getInstance(this.fourKTest);
+		List<City> cities = instance.getCityList();
 		List<List<Double>> acsList = new ArrayList<List<Double>>();
 		List<List<Double>> easList = new ArrayList<List<Double>>();
 
@@ -205,7 +229,10 @@ public class TestingSuite {
 			List<Double> bests = new ArrayList<Double>();
 			Environment env = new Environment(cities.size(), antNumBig, alpha, betaBig, rho, eliteNum, epsilon, 0.1,
 					qNot);
+			env.setCandidateListSize(candidateListSize);
+			env.setProblem(instance);
 			AntColonySystem acs = new AntColonySystem(env, cities, 50);
+			this.configureRun(acs, i);
 			bests = acs.optimize();
 			acsList.add(bests);
 		}
@@ -214,7 +241,10 @@ public class TestingSuite {
 			List<Double> bests = new ArrayList<Double>();
 			Environment env = new Environment(cities.size(), antNumBig, alpha, betaBig, rho, eliteNum, epsilon, 0.1,
 					qNot);
+			env.setCandidateListSize(candidateListSize);
+			env.setProblem(instance);
 			ElitistAntSystem eas = new ElitistAntSystem(env, cities, 50);
+			this.configureRun(eas, i);
 			bests = eas.optimize();
 			easList.add(bests);
 		}
@@ -236,7 +266,8 @@ public class TestingSuite {
 
 	// run both ACS and EAS for the 5k problem size
 	public void runFiveThousands() {
-		List<City> cities = getCityList(this.fiveKTest);
+		TsplibInstance instance = getInstance(this.fiveKTest);
+		List<City> cities = instance.getCityList();
 		List<List<Double>> acsList = new ArrayList<List<Double>>();
 		List<List<Double>> easList = new ArrayList<List<Double>>();
 
@@ -244,7 +275,10 @@ public class TestingSuite {
 			List<Double> bests = new ArrayList<Double>();
 			Environment env = new Environment(cities.size(), antNumBig, alpha, betaBig, rho, eliteNum, epsilon, 0.1,
 					qNot);
+			env.setCandidateListSize(candidateListSize);
+			env.setProblem(instance);
 			AntColonySystem acs = new AntColonySystem(env, cities, 50);
+			this.configureRun(acs, i);
 			bests = acs.optimize();
 			acsList.add(bests);
 		}
@@ -253,7 +287,10 @@ public class TestingSuite {
 			List<Double> bests = new ArrayList<Double>();
 			Environment env = new Environment(cities.size(), antNumBig, alpha, betaBig, rho, eliteNum, epsilon, 0.1,
 					qNot);
+			env.setCandidateListSize(candidateListSize);
+			env.setProblem(instance);
 			ElitistAntSystem eas = new ElitistAntSystem(env, cities, 50);
+			this.configureRun(eas, i);
 			bests = eas.optimize();
 			easList.add(bests);
 		}
@@ -278,7 +315,8 @@ public class TestingSuite {
 
 	// runs test for specific rho
 	public void runRho(double specificRho) {
-		List<City> cities = getCityList(this.twoKTest);
+		TsplibInstance instance = getInstance(this.twoKTest);
+		List<City> cities = instance.getCityList();
 		List<List<Double>> acsList = new ArrayList<List<Double>>();
 		List<List<Double>> easList = new ArrayList<List<Double>>();
 
@@ -286,7 +324,10 @@ public class TestingSuite {
 			List<Double> bests = new ArrayList<Double>();
 			Environment env = new Environment(cities.size(), antNumBig, alpha, betaBig, specificRho, eliteNum, epsilon,
 					0.1, qNot);
+			env.setCandidateListSize(candidateListSize);
+			env.setProblem(instance);
 			AntColonySystem acs = new AntColonySystem(env, cities, 50);
+			this.configureRun(acs, i);
 			bests = acs.optimize();
 			acsList.add(bests);
 		}
@@ -295,7 +336,10 @@ public class TestingSuite {
 			List<Double> bests = new ArrayList<Double>();
 			Environment env = new Environment(cities.size(), antNumBig, alpha, betaBig, specificRho, eliteNum, epsilon,
 					0.1, qNot);
+			env.setCandidateListSize(candidateListSize);
+			env.setProblem(instance);
 			ElitistAntSystem eas = new ElitistAntSystem(env, cities, 50);
+			this.configureRun(eas, i);
 			bests = eas.optimize();
 			easList.add(bests);
 		}
@@ -329,9 +373,15 @@ public class TestingSuite {
 
 	}
 
+	/**
+	 * Runs every test, sequentially unless a number of tour construction threads
+	 * is given as the first argument.
+	 * 
+	 * @param args Optionally, the number of threads.
+	 */
 	public static void main(String args[]) {
 
-		TestingSuite ts = new TestingSuite();
+		TestingSuite ts = args.length > 0 ? new TestingSuite(Integer.parseInt(args[0])) : new TestingSuite();
 
 		System.out.println("TWO THOUSANDS TEST");
 		ts.runTwoThousands();
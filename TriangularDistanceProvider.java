@@ -0,0 +1,302 @@
+import java.nio.Buffer;
+import java.nio.CharBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * DistanceProvider that stores each distance once, in a packed lower triangle
+ * (the distances are symmetric), using the smallest element type that holds
+ * them:
+ * 
+ * - char (2 bytes) for integer distances below 65536,
+ * - int (4 bytes) for larger integer distances,
+ * - float (4 bytes) for EUCLIDEAN, which is not rounded.
+ * 
+ * Compared to a double matrix this needs 4 to 8 times less memory, so the rows
+ * that tour construction scans stay in cache much better. The integer types
+ * follow the TSPLIB rounding rules of the edge weight type, so tour costs match
+ * the published optima. The triangle is filled in parallel.
+ * 
+ * The triangle can also live outside the heap, in buffers mapped from a file
+ * (see InstanceCache), split into chunks of MAPPED_CHUNK_SIZE entries since a
+ * single mapping cannot exceed 2 GB.
+ */
+public class TriangularDistanceProvider implements DistanceProvider {
+
+    /**
+     * The number of entries in every chunk of a mapped triangle but the last.
+     */
+    public static final int MAPPED_CHUNK_SIZE = 1 << 28;
+    private static final int MAPPED_CHUNK_MASK = MAPPED_CHUNK_SIZE - 1;
+    private static final int MAPPED_CHUNK_BITS = 28;
+
+    private int numCities;
+    private int[] rowOffsets; // index of distance (i, 0) in the packed triangle
+    private char[] shortDistances;
+    private int[] intDistances;
+    private float[] floatDistances;
+    private CharBuffer[] mappedShortDistances; // the chunks of a mapped triangle, at most one kind set
+    private IntBuffer[] mappedIntDistances;
+    private FloatBuffer[] mappedFloatDistances;
+
+    /**
+     * Computes every distance according to the edge weight type.
+     * 
+     * @param cityList       A list object holding all the City objects.
+     * @param edgeWeightType How the distance between two cities is computed.
+     * @throws IllegalArgumentException If the triangle has more entries than a
+     *                                  Java array can hold (more than about 65000
+     *                                  cities).
+     */
+    public TriangularDistanceProvider(List<City> cityList, final EdgeWeightType edgeWeightType) {
+        long size = initRowOffsets(cityList.size());
+
+        final double[] xCoords = new double[this.numCities];
+        final double[] yCoords = new double[this.numCities];
+        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < this.numCities; i++) {
+            xCoords[i] = cityList.get(i).getXCoord();
+            yCoords[i] = cityList.get(i).getYCoord();
+            minX = Math.min(minX, xCoords[i]);
+            maxX = Math.max(maxX, xCoords[i]);
+            minY = Math.min(minY, yCoords[i]);
+            maxY = Math.max(maxY, yCoords[i]);
+        }
+
+        if (edgeWeightType == EdgeWeightType.EUCLIDEAN) {
+            this.floatDistances = new float[(int) size];
+        } else if (maxDistance(edgeWeightType, maxX - minX, maxY - minY) < Character.MAX_VALUE) {
+            this.shortDistances = new char[(int) size];
+        } else {
+            this.intDistances = new int[(int) size];
+        }
+
+        // every row of the triangle is independent, so fill them in parallel
+        IntStream.range(1, this.numCities).parallel().forEach(i -> {
+            int offset = this.rowOffsets[i];
+            for (int j = 0; j < i; j++) {
+                double distance = edgeWeightType.distance(xCoords[i], yCoords[i], xCoords[j], yCoords[j]);
+                if (this.floatDistances != null) {
+                    this.floatDistances[offset + j] = (float) distance;
+                } else if (this.shortDistances != null) {
+                    this.shortDistances[offset + j] = (char) distance;
+                } else {
+                    this.intDistances[offset + j] = (int) distance;
+                }
+            }
+        });
+    }
+
+    /**
+     * Uses given integer distances, e.g. the explicit edge weights of a TSPLIB
+     * file (see TsplibInstance.getEdgeWeights). The distance between cities i and
+     * j, with i > j, is weights[i * (i - 1) / 2 + j]. The weights are copied into
+     * chars if they are small enough, otherwise the array is used as it is.
+     * 
+     * @param numCities The number of cities.
+     * @param weights   The packed lower triangle of distances.
+     * @throws IllegalArgumentException If weights does not have numCities *
+     *                                  (numCities - 1) / 2 entries.
+     */
+    public TriangularDistanceProvider(int numCities, int[] weights) {
+        long size = initRowOffsets(numCities);
+        if (weights.length != size) {
+            throw new IllegalArgumentException(
+                    weights.length + " weights do not make a triangle of " + numCities + " cities");
+        }
+
+        int minWeight = 0;
+        int maxWeight = 0;
+        for (int i = 0; i < weights.length; i++) {
+            minWeight = Math.min(minWeight, weights[i]);
+            maxWeight = Math.max(maxWeight, weights[i]);
+        }
+        if (minWeight >= 0 && maxWeight < Character.MAX_VALUE) {
+            this.shortDistances = new char[weights.length];
+            for (int i = 0; i < weights.length; i++) {
+                this.shortDistances[i] = (char) weights[i];
+            }
+        } else {
+            this.intDistances = weights;
+        }
+    }
+
+    /**
+     * Uses a triangle computed earlier, e.g. one loaded by the InstanceCache.
+     * Exactly one of the arrays must be given, laid out like the ones of the other
+     * constructors (see getShortDistances, getIntDistances and
+     * getFloatDistances).
+     * 
+     * @param numCities      The number of cities.
+     * @param shortDistances The distances as chars, or null.
+     * @param intDistances   The distances as ints, or null.
+     * @param floatDistances The distances as floats, or null.
+     * @throws IllegalArgumentException If not exactly one array of numCities *
+     *                                  (numCities - 1) / 2 entries is given.
+     */
+    public TriangularDistanceProvider(int numCities, char[] shortDistances, int[] intDistances,
+            float[] floatDistances) {
+        long size = initRowOffsets(numCities);
+        int given = (shortDistances != null ? 1 : 0) + (intDistances != null ? 1 : 0) + (floatDistances != null ? 1 : 0);
+        long length = shortDistances != null ? shortDistances.length
+                : intDistances != null ? intDistances.length : floatDistances != null ? floatDistances.length : -1;
+        if (given != 1 || length != size) {
+            throw new IllegalArgumentException("Need one triangle of " + size + " distances");
+        }
+        this.shortDistances = shortDistances;
+        this.intDistances = intDistances;
+        this.floatDistances = floatDistances;
+    }
+
+    /**
+     * Uses a triangle in buffers, e.g. mapped from a file by the InstanceCache,
+     * without copying it. The buffers are only read (with absolute gets), so the
+     * provider can be shared between threads. Exactly one of the arrays must be
+     * given; the triangle is laid out like the one of getShortDistances and split
+     * into chunks of MAPPED_CHUNK_SIZE entries, the last chunk holding the rest.
+     * 
+     * @param numCities            The number of cities.
+     * @param mappedShortDistances The chunks of chars, or null.
+     * @param mappedIntDistances   The chunks of ints, or null.
+     * @param mappedFloatDistances The chunks of floats, or null.
+     * @throws IllegalArgumentException If not exactly one array is given, or its
+     *                                  chunks do not hold numCities * (numCities -
+     *                                  1) / 2 entries as described.
+     */
+    public TriangularDistanceProvider(int numCities, CharBuffer[] mappedShortDistances,
+            IntBuffer[] mappedIntDistances, FloatBuffer[] mappedFloatDistances) {
+        long size = initRowOffsets(numCities);
+        int given = (mappedShortDistances != null ? 1 : 0) + (mappedIntDistances != null ? 1 : 0)
+                + (mappedFloatDistances != null ? 1 : 0);
+        Buffer[] chunks = mappedShortDistances != null ? mappedShortDistances
+                : mappedIntDistances != null ? mappedIntDistances : mappedFloatDistances;
+        if (given != 1 || chunks.length != (size + MAPPED_CHUNK_SIZE - 1) / MAPPED_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Need one triangle of " + size + " distances");
+        }
+        for (int c = 0; c < chunks.length; c++) {
+            long expected = Math.min(MAPPED_CHUNK_SIZE, size - (long) c * MAPPED_CHUNK_SIZE);
+            if (chunks[c].limit() != expected) {
+                throw new IllegalArgumentException("Chunk " + c + " does not hold " + expected + " distances");
+            }
+        }
+        this.mappedShortDistances = mappedShortDistances;
+        this.mappedIntDistances = mappedIntDistances;
+        this.mappedFloatDistances = mappedFloatDistances;
+    }
+
+    /**
+     * Sets the number of cities and the offsets of the rows of the triangle.
+     * 
+     * @param numCities The number of cities.
+     * @return The number of entries of the triangle.
+     * @throws IllegalArgumentException If the triangle has more entries than a
+     *                                  Java array can hold.
+     */
+    private long initRowOffsets(int numCities) {
+        this.numCities = numCities;
+
+        long size = (long) this.numCities * (this.numCities - 1) / 2;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(
+                    this.numCities + " cities are too many for a packed distance triangle, compute them on the fly");
+        }
+
+        this.rowOffsets = new int[this.numCities];
+        for (int i = 1; i < this.numCities; i++) {
+            this.rowOffsets[i] = this.rowOffsets[i - 1] + (i - 1);
+        }
+        return size;
+    }
+
+    /**
+     * Upper bound on any distance between two cities inside the bounding box.
+     * 
+     * @param edgeWeightType The edge weight type.
+     * @param width          The width of the bounding box of the cities.
+     * @param height         The height of the bounding box of the cities.
+     * @return An upper bound on the distances.
+     */
+    private static double maxDistance(EdgeWeightType edgeWeightType, double width, double height) {
+        if (edgeWeightType == EdgeWeightType.GEO) {
+            return 20040; // half the circumference of the earth in km, rounded up
+        }
+        // the integer types never exceed the rounded up Euclidean diagonal
+        return Math.ceil(Math.sqrt(width * width + height * height)) + 1;
+    }
+
+    public double getDistance(int city1, int city2) {
+        if (city1 == city2) {
+            return 0.0;
+        }
+        int index = city1 > city2 ? this.rowOffsets[city1] + city2 : this.rowOffsets[city2] + city1;
+        if (this.shortDistances != null) {
+            return this.shortDistances[index];
+        } else if (this.intDistances != null) {
+            return this.intDistances[index];
+        } else if (this.floatDistances != null) {
+            return this.floatDistances[index];
+        }
+        return getMappedDistance(index);
+    }
+
+    // the entry of a mapped triangle
+    private double getMappedDistance(int index) {
+        int chunk = index >>> MAPPED_CHUNK_BITS;
+        int offset = index & MAPPED_CHUNK_MASK;
+        if (this.mappedShortDistances != null) {
+            return this.mappedShortDistances[chunk].get(offset);
+        } else if (this.mappedIntDistances != null) {
+            return this.mappedIntDistances[chunk].get(offset);
+        }
+        return this.mappedFloatDistances[chunk].get(offset);
+    }
+
+    /**
+     * Whether the triangle is in mapped buffers rather than in an array, in which
+     * case the array getters return null.
+     * 
+     * @return True for a triangle given as buffers.
+     */
+    public boolean isMapped() {
+        return this.mappedShortDistances != null || this.mappedIntDistances != null
+                || this.mappedFloatDistances != null;
+    }
+
+    public int getNumCities() {
+        return this.numCities;
+    }
+
+    /**
+     * Getter for the triangle when the distances are stored as chars. The
+     * distance between cities i and j, with i > j, is at index i * (i - 1) / 2 +
+     * j.
+     * 
+     * @return The packed triangle, or null if the distances are stored otherwise.
+     */
+    public char[] getShortDistances() {
+        return this.shortDistances;
+    }
+
+    /**
+     * Getter for the triangle when the distances are stored as ints, laid out
+     * like getShortDistances.
+     * 
+     * @return The packed triangle, or null if the distances are stored otherwise.
+     */
+    public int[] getIntDistances() {
+        return this.intDistances;
+    }
+
+    /**
+     * Getter for the triangle when the distances are stored as floats, laid out
+     * like getShortDistances.
+     * 
+     * @return The packed triangle, or null if the distances are stored otherwise.
+     */
+    public float[] getFloatDistances() {
+        return this.floatDistances;
+    }
+}
@@ -0,0 +1,216 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A problem read from a TSPLIB file by TsplibReader: the header fields, the city
+ * coordinates in primitive arrays indexed by city id (the TSPLIB node number
+ * minus 1) and, for EXPLICIT instances, the edge weights in a packed lower
+ * triangle. An instance loaded by the InstanceCache also carries the
+ * preprocessed candidate lists and, optionally, the distance triangle.
+ */
+public class TsplibInstance {
+
+    private String name;
+    private String comment;
+    private String type;
+    private int dimension;
+    private String edgeWeightType;
+    private String edgeWeightFormat;
+    private double[] xCoords;
+    private double[] yCoords;
+    private int[] edgeWeights;
+    private int[][] candidateLists;
+    private TriangularDistanceProvider distanceTriangle;
+
+    /**
+     * Creates an instance from the parsed fields.
+     * 
+     * @param name             The NAME of the problem.
+     * @param comment          The COMMENT, or an empty string.
+     * @param type             The TYPE, e.g. TSP.
+     * @param dimension        The number of cities.
+     * @param edgeWeightType   The EDGE_WEIGHT_TYPE as written in the file.
+     * @param edgeWeightFormat The EDGE_WEIGHT_FORMAT, or an empty string.
+     * @param xCoords          The x coordinate of every city, null if the file
+     *                         has none.
+     * @param yCoords          The y coordinate of every city, null if the file
+     *                         has none.
+     * @param edgeWeights      The weights of EDGE_WEIGHT_SECTION as a packed lower
+     *                         triangle, null if the file has none.
+     */
+    public TsplibInstance(String name, String comment, String type, int dimension, String edgeWeightType,
+            String edgeWeightFormat, double[] xCoords, double[] yCoords, int[] edgeWeights) {
+        this.name = name;
+        this.comment = comment;
+        this.type = type;
+        this.dimension = dimension;
+        this.edgeWeightType = edgeWeightType;
+        this.edgeWeightFormat = edgeWeightFormat;
+        this.xCoords = xCoords;
+        this.yCoords = yCoords;
+        this.edgeWeights = edgeWeights;
+    }
+
+    /**
+     * Getter for the name of the problem.
+     * 
+     * @return The NAME field.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Getter for the comment of the problem.
+     * 
+     * @return The COMMENT field, or an empty string.
+     */
+    public String getComment() {
+        return this.comment;
+    }
+
+    /**
+     * Getter for the type of the problem.
+     * 
+     * @return The TYPE field, e.g. TSP.
+     */
+    public String getType() {
+        return this.type;
+    }
+
+    /**
+     * Getter for the number of cities.
+     * 
+     * @return The DIMENSION field.
+     */
+    public int getDimension() {
+        return this.dimension;
+    }
+
+    /**
+     * Getter for the edge weight type.
+     * 
+     * @return The EDGE_WEIGHT_TYPE field as written in the file, e.g. EUC_2D.
+     */
+    public String getEdgeWeightType() {
+        return this.edgeWeightType;
+    }
+
+    /**
+     * Getter for the edge weight format.
+     * 
+     * @return The EDGE_WEIGHT_FORMAT field, e.g. LOWER_DIAG_ROW, or an empty
+     *         string.
+     */
+    public String getEdgeWeightFormat() {
+        return this.edgeWeightFormat;
+    }
+
+    /**
+     * Whether the distances are given in the file (EDGE_WEIGHT_TYPE EXPLICIT)
+     * rather than computed from the coordinates.
+     * 
+     * @return True if the instance has explicit edge weights.
+     */
+    public boolean isExplicit() {
+        return this.edgeWeightType.equals("EXPLICIT");
+    }
+
+    /**
+     * Whether the file gives the coordinates of the cities, either for computing
+     * the distances or only for display.
+     * 
+     * @return True if the instance has coordinates.
+     */
+    public boolean hasCoordinates() {
+        return this.xCoords != null;
+    }
+
+    /**
+     * Getter for the x coordinates.
+     * 
+     * @return The x coordinate of every city, indexed by city id, or null.
+     */
+    public double[] getXCoords() {
+        return this.xCoords;
+    }
+
+    /**
+     * Getter for the y coordinates.
+     * 
+     * @return The y coordinate of every city, indexed by city id, or null.
+     */
+    public double[] getYCoords() {
+        return this.yCoords;
+    }
+
+    /**
+     * Getter for the explicit edge weights. The weight between cities i and j,
+     * with i > j, is at index i * (i - 1) / 2 + j (see
+     * TriangularDistanceProvider).
+     * 
+     * @return The packed lower triangle of weights, or null (also when the
+     *         weights come as a distance triangle from the InstanceCache).
+     */
+    public int[] getEdgeWeights() {
+        return this.edgeWeights;
+    }
+
+    /**
+     * Getter for the preprocessed candidate lists.
+     * 
+     * @return For every city, the ids of its nearest neighbours sorted by
+     *         increasing distance, or null.
+     */
+    public int[][] getCandidateLists() {
+        return this.candidateLists;
+    }
+
+    /**
+     * Attaches preprocessed candidate lists (see Environment.setProblem).
+     * 
+     * @param candidateLists For every city, the ids of its nearest neighbours
+     *                       sorted by increasing distance.
+     */
+    public void setCandidateLists(int[][] candidateLists) {
+        this.candidateLists = candidateLists;
+    }
+
+    /**
+     * Getter for the precomputed distance triangle.
+     * 
+     * @return The distances between all the cities, or null.
+     */
+    public TriangularDistanceProvider getDistanceTriangle() {
+        return this.distanceTriangle;
+    }
+
+    /**
+     * Attaches precomputed distances (see Environment.setProblem).
+     * 
+     * @param distanceTriangle The distances between all the cities.
+     */
+    public void setDistanceTriangle(TriangularDistanceProvider distanceTriangle) {
+        this.distanceTriangle = distanceTriangle;
+    }
+
+    /**
+     * Creates the City objects the solvers take, numbered from 1 like the TSPLIB
+     * nodes. Cities of an instance without coordinates are all placed at (0, 0);
+     * their distances then have to come from the edge weights (see
+     * Environment.setProblem).
+     * 
+     * @return A list of City objects (i.e. our problem information).
+     */
+    public List<City> getCityList() {
+        List<City> cities = new ArrayList<City>(this.dimension);
+        for (int i = 0; i < this.dimension; i++) {
+            if (this.xCoords != null) {
+                cities.add(new City(i + 1, this.xCoords[i], this.yCoords[i]));
+            } else {
+                cities.add(new City(i + 1, 0.0, 0.0));
+            }
+        }
+        return cities;
+    }
+}
@@ -0,0 +1,477 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming reader for TSPLIB files. The file is read through a fixed byte
+ * buffer and the numbers are parsed straight from the bytes, so apart from the
+ * few header strings nothing is allocated per line and the coordinates go
+ * directly into primitive arrays. Any amount of whitespace may separate the
+ * tokens, and header lines may be written as "KEY : value", "KEY: value" or "KEY
+ * value".
+ * 
+ * Reads the coordinates of NODE_COORD_SECTION (or, for instances without one,
+ * of DISPLAY_DATA_SECTION) and the weights of EDGE_WEIGHT_SECTION, which are
+ * stored in a packed lower triangle whatever EDGE_WEIGHT_FORMAT they are given
+ * in (the problems are symmetric). Other sections are skipped.
+ */
+public class TsplibReader {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    private InputStream in;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private int mark = -1; // start of the number being read, kept in the buffer when it is refilled
+
+    /**
+     * Creates a reader on a stream.
+     * 
+     * @param in The stream holding the TSPLIB file.
+     */
+    private TsplibReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads a TSPLIB file.
+     * 
+     * @param filename The name of the file.
+     * @return The problem.
+     * @throws IOException If the file cannot be read or is not a valid TSPLIB
+     *                     file.
+     */
+    public static TsplibInstance read(String filename) throws IOException {
+        try (InputStream in = new FileInputStream(filename)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Reads a TSPLIB file from a stream (which is not closed).
+     * 
+     * @param in The stream holding the TSPLIB file.
+     * @return The problem.
+     * @throws IOException If the stream cannot be read or does not hold a valid
+     *                     TSPLIB file.
+     */
+    public static TsplibInstance read(InputStream in) throws IOException {
+        return new TsplibReader(in).readInstance();
+    }
+
+    /**
+     * Reads the header fields and the sections up to EOF (or the end of the
+     * input).
+     * 
+     * @return The problem.
+     * @throws IOException If the input cannot be read or is not valid.
+     */
+    private TsplibInstance readInstance() throws IOException {
+        String name = "";
+        String comment = "";
+        String type = "";
+        String edgeWeightType = "";
+        String edgeWeightFormat = "";
+        int dimension = -1;
+        double[] xCoords = null;
+        double[] yCoords = null;
+        int[] edgeWeights = null;
+
+        String keyword;
+        while ((keyword = nextKeyword()) != null && !keyword.equals("EOF")) {
+            if (keyword.equals("NODE_COORD_SECTION")
+                    || (keyword.equals("DISPLAY_DATA_SECTION") && xCoords == null)) {
+                checkDimension(keyword, dimension);
+                xCoords = new double[dimension];
+                yCoords = new double[dimension];
+                readCoordinates(xCoords, yCoords);
+            } else if (keyword.equals("EDGE_WEIGHT_SECTION")) {
+                checkDimension(keyword, dimension);
+                edgeWeights = readEdgeWeights(edgeWeightFormat, dimension);
+            } else if (keyword.endsWith("_SECTION")) {
+                skipNumbers();
+            } else {
+                String value = restOfLine();
+                if (keyword.equals("NAME")) {
+                    name = value;
+                } else if (keyword.equals("COMMENT")) {
+                    comment = comment.isEmpty() ? value : comment + "\n" + value;
+                } else if (keyword.equals("TYPE")) {
+                    type = value;
+                } else if (keyword.equals("DIMENSION")) {
+                    dimension = parseDimension(value);
+                } else if (keyword.equals("EDGE_WEIGHT_TYPE")) {
+                    edgeWeightType = value;
+                } else if (keyword.equals("EDGE_WEIGHT_FORMAT")) {
+                    edgeWeightFormat = value;
+                }
+            }
+        }
+
+        if (edgeWeightType.equals("EXPLICIT") && edgeWeights == null) {
+            throw new IOException("No EDGE_WEIGHT_SECTION");
+        } else if (!edgeWeightType.equals("EXPLICIT") && xCoords == null) {
+            throw new IOException("No NODE_COORD_SECTION");
+        }
+        return new TsplibInstance(name, comment, type, dimension, edgeWeightType, edgeWeightFormat, xCoords, yCoords,
+                edgeWeights);
+    }
+
+    /**
+     * Checks that the dimension is known when a section starts.
+     * 
+     * @param section   The name of the section.
+     * @param dimension The dimension read so far, -1 if none.
+     * @throws IOException If there was no DIMENSION field.
+     */
+    private static void checkDimension(String section, int dimension) throws IOException {
+        if (dimension < 0) {
+            throw new IOException(section + " before DIMENSION");
+        }
+    }
+
+    /**
+     * Reads the lines of a coordinate section: a node number followed by its x
+     * and y coordinates.
+     * 
+     * @param xCoords Receives the x coordinates, indexed by node number - 1.
+     * @param yCoords Receives the y coordinates, indexed by node number - 1.
+     * @throws IOException If the input cannot be read or is not valid.
+     */
+    private void readCoordinates(double[] xCoords, double[] yCoords) throws IOException {
+        int dimension = xCoords.length;
+        for (int i = 0; i < dimension; i++) {
+            int node = nextInt();
+            if (node < 1 || node > dimension) {
+                throw new IOException("Node " + node + " out of range 1.." + dimension);
+            }
+            xCoords[node - 1] = nextDouble();
+            yCoords[node - 1] = nextDouble();
+        }
+    }
+
+    /**
+     * Reads the weights of EDGE_WEIGHT_SECTION into a packed lower triangle, where
+     * the weight of (i, j) with i > j is at index i * (i - 1) / 2 + j. Weights on
+     * the diagonal are skipped, and of a full matrix only the lower triangle is
+     * kept. A column-wise upper (lower) triangle lists the weights in the same
+     * order as the row-wise lower (upper) one, so those formats are read alike.
+     * 
+     * @param format    The EDGE_WEIGHT_FORMAT.
+     * @param dimension The number of cities.
+     * @return The packed triangle.
+     * @throws IOException If the input cannot be read or is not valid, or the
+     *                     format is not supported.
+     */
+    private int[] readEdgeWeights(String format, int dimension) throws IOException {
+        long size = (long) dimension * (dimension - 1) / 2;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException(dimension + " cities are too many for explicit edge weights");
+        }
+        int[] weights = new int[(int) size];
+
+        boolean lower; // whether row i lists the columns j <= i (or else j >= i)
+        boolean diagonal; // whether the rows include the diagonal
+        if (format.equals("FULL_MATRIX")) {
+            for (int i = 0; i < dimension; i++) {
+                for (int j = 0; j < dimension; j++) {
+                    int weight = nextInt();
+                    if (j < i) {
+                        weights[(int) ((long) i * (i - 1) / 2) + j] = weight;
+                    }
+                }
+            }
+            return weights;
+        } else if (format.equals("LOWER_ROW") || format.equals("UPPER_COL")) {
+            lower = true;
+            diagonal = false;
+        } else if (format.equals("LOWER_DIAG_ROW") || format.equals("UPPER_DIAG_COL")) {
+            lower = true;
+            diagonal = true;
+        } else if (format.equals("UPPER_ROW") || format.equals("LOWER_COL")) {
+            lower = false;
+            diagonal = false;
+        } else if (format.equals("UPPER_DIAG_ROW") || format.equals("LOWER_DIAG_COL")) {
+            lower = false;
+            diagonal = true;
+        } else {
+            throw new IOException("Unsupported EDGE_WEIGHT_FORMAT: " + format);
+        }
+
+        for (int i = 0; i < dimension; i++) {
+            int from = lower ? 0 : (diagonal ? i : i + 1);
+            int to = lower ? (diagonal ? i : i - 1) : dimension - 1;
+            for (int j = from; j <= to; j++) {
+                int weight = nextInt();
+                if (j < i) {
+                    weights[(int) ((long) i * (i - 1) / 2) + j] = weight;
+                } else if (j > i) {
+                    weights[(int) ((long) j * (j - 1) / 2) + i] = weight;
+                }
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Parses the value of the DIMENSION field.
+     * 
+     * @param value The value.
+     * @return The number of cities.
+     * @throws IOException If the value is not a positive integer.
+     */
+    private static int parseDimension(String value) throws IOException {
+        try {
+            int dimension = Integer.parseInt(value);
+            if (dimension > 0) {
+                return dimension;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IOException("Invalid DIMENSION: " + value);
+    }
+
+    /**
+     * Reads the next byte.
+     * 
+     * @return The byte, or -1 at the end of the input.
+     * @throws IOException If the input cannot be read.
+     */
+    private int read() throws IOException {
+        if (this.position == this.limit) {
+            // keep the marked bytes, at the front of the (if need be, grown) buffer
+            int kept = 0;
+            if (this.mark >= 0) {
+                kept = this.limit - this.mark;
+                if (kept == this.buffer.length) {
+                    this.buffer = Arrays.copyOf(this.buffer, 2 * this.buffer.length);
+                }
+                System.arraycopy(this.buffer, this.mark, this.buffer, 0, kept);
+                this.mark = 0;
+            }
+            int count = this.in.read(this.buffer, kept, this.buffer.length - kept);
+            this.position = kept;
+            this.limit = kept + Math.max(count, 0);
+            if (count <= 0) {
+                return -1;
+            }
+        }
+        return this.buffer[this.position++];
+    }
+
+    /**
+     * Looks at the next byte without consuming it.
+     * 
+     * @return The byte, or -1 at the end of the input.
+     * @throws IOException If the input cannot be read.
+     */
+    private int peek() throws IOException {
+        int next = read();
+        if (next != -1) {
+            this.position--;
+        }
+        return next;
+    }
+
+    // whether a byte is a space, tab, carriage return or newline
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    /**
+     * Skips whitespace, including line breaks.
+     * 
+     * @return The next byte (not consumed), or -1 at the end of the input.
+     * @throws IOException If the input cannot be read.
+     */
+    private int skipWhitespace() throws IOException {
+        int next;
+        while ((next = peek()) != -1 && isWhitespace(next)) {
+            this.position++;
+        }
+        return next;
+    }
+
+    /**
+     * Reads a header keyword: the next word, up to whitespace or a colon.
+     * 
+     * @return The keyword, or null at the end of the input.
+     * @throws IOException If the input cannot be read.
+     */
+    private String nextKeyword() throws IOException {
+        if (skipWhitespace() == -1) {
+            return null;
+        }
+        StringBuilder keyword = new StringBuilder();
+        int next;
+        while ((next = peek()) != -1 && !isWhitespace(next) && next != ':') {
+            keyword.append((char) next);
+            this.position++;
+        }
+        return keyword.toString();
+    }
+
+    /**
+     * Reads the value of a header field: the rest of the line without the colon
+     * and the surrounding whitespace.
+     * 
+     * @return The value.
+     * @throws IOException If the input cannot be read.
+     */
+    private String restOfLine() throws IOException {
+        int next;
+        while ((next = peek()) == ' ' || next == '\t' || next == ':') {
+            this.position++;
+        }
+        StringBuilder value = new StringBuilder();
+        while ((next = read()) != -1 && next != '\n') {
+            value.append((char) next);
+        }
+        return value.toString().trim();
+    }
+
+    /**
+     * Skips the numbers of a section we do not read, i.e. everything up to the
+     * next word that starts with a letter.
+     * 
+     * @throws IOException If the input cannot be read.
+     */
+    private void skipNumbers() throws IOException {
+        int next;
+        while ((next = skipWhitespace()) != -1 && !Character.isLetter(next)) {
+            while ((next = peek()) != -1 && !isWhitespace(next)) {
+                this.position++;
+            }
+        }
+    }
+
+    /**
+     * Reads a (non-negative) integer.
+     * 
+     * @return The integer.
+     * @throws IOException If the input cannot be read or the next token is not an
+     *                     integer.
+     */
+    private int nextInt() throws IOException {
+        int next = skipWhitespace();
+        if (next < '0' || next > '9') {
+            throw new IOException("Expected an integer but found " + describe(next));
+        }
+        long value = 0;
+        while ((next = peek()) >= '0' && next <= '9') {
+            value = value * 10 + (next - '0');
+            if (value > Integer.MAX_VALUE) {
+                throw new IOException("Integer too large");
+            }
+            this.position++;
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reads a decimal number with an optional sign, fraction and exponent, e.g.
+     * -12, 3.25 or 8.37000e+02. Numbers whose digits make an integer of at most
+     * 2^53 and whose decimal exponent is at most 22 in absolute value (which
+     * covers the coordinates of the TSPLIB files) are converted with one
+     * multiplication or division, which is correctly rounded; longer or larger
+     * ones are handed to Double.parseDouble.
+     * 
+     * @return The number.
+     * @throws IOException If the input cannot be read or the next token is not a
+     *                     number.
+     */
+    private double nextDouble() throws IOException {
+        int next = skipWhitespace();
+        this.mark = this.position;
+        boolean negative = false;
+        if (next == '-' || next == '+') {
+            negative = next == '-';
+            this.position++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        boolean exact = true; // whether mantissa holds every significant digit
+
+        while ((next = peek()) >= '0' && next <= '9') {
+            this.position++;
+            anyDigit = true;
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (next - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+            } else {
+                exponent++;
+                exact = false;
+            }
+        }
+        if (next == '.') {
+            this.position++;
+            while ((next = peek()) >= '0' && next <= '9') {
+                this.position++;
+                anyDigit = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (next - '0');
+                    exponent--;
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                } else if (next != '0') {
+                    exact = false;
+                }
+            }
+        }
+        if (!anyDigit) {
+            throw new IOException("Expected a number but found " + describe(next));
+        }
+
+        if (next == 'e' || next == 'E') {
+            this.position++;
+            boolean negativeExponent = false;
+            next = peek();
+            if (next == '-' || next == '+') {
+                negativeExponent = next == '-';
+                this.position++;
+            }
+            int explicitExponent = 0;
+            while ((next = peek()) >= '0' && next <= '9') {
+                this.position++;
+                explicitExponent = Math.min(explicitExponent * 10 + (next - '0'), 10000);
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        // both the mantissa and the power of ten are exact doubles, so one operation rounds correctly
+        int start = this.mark;
+        this.mark = -1;
+        if (!exact || mantissa > (1L << 53) || exponent > 22 || exponent < -22) {
+            String token = new String(this.buffer, start, this.position - start, StandardCharsets.US_ASCII);
+            try {
+                return Double.parseDouble(token);
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed number " + token);
+            }
+        }
+        double value = mantissa;
+        if (exponent > 0) {
+            value *= POWERS_OF_TEN[exponent];
+        } else if (exponent < 0) {
+            value /= POWERS_OF_TEN[-exponent];
+        }
+        return negative ? -value : value;
+    }
+
+    // a byte for an error message
+    private static String describe(int c) {
+        return c == -1 ? "the end of the file" : "'" + (char) c + "'";
+    }
+}
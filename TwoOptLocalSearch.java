@@ -0,0 +1,246 @@
+/**
+ * 2-opt and Or-opt local search driven by the candidate lists of the
+ * Environment and don't-look bits, which keeps the time per tour close to
+ * linear:
+ *
+ * - Only edges to one of a city's candidates are tried as new edges, and the
+ * scan of the (sorted) candidates stops as soon as the new edge is no shorter
+ * than the one it would replace.
+ * - Cities whose neighbourhood did not yield an improving move are switched
+ * off (their don't-look bit is set) until a move changes one of their tour
+ * neighbours. The active cities are kept in a queue.
+ *
+ * Moves are first improvement. A 2-opt move reverses the shorter of the two
+ * paths it could reverse; an Or-opt move, which moves a segment of 1 to 3 cities
+ * elsewhere (possibly reversed), is carried out as two or three 2-opt moves.
+ *
+ * Needs candidate lists (Environment.setCandidateListSize). Safe to use from
+ * several threads at once: the working arrays are kept per thread.
+ */
+public class TwoOptLocalSearch implements LocalSearch {
+
+    // moves must gain at least this much, so rounding errors cannot make us cycle
+    protected static final double EPSILON = 1e-9;
+
+    protected Environment world;
+    private boolean orOpt;
+    private ThreadLocal<TourArrays> workingArrays = new ThreadLocal<TourArrays>();
+
+    /**
+     * 2-opt and Or-opt local search.
+     *
+     * @param world The Environment the tours belong to.
+     */
+    public TwoOptLocalSearch(Environment world) {
+        this(world, true);
+    }
+
+    /**
+     * Local search with 2-opt and optionally Or-opt moves.
+     *
+     * @param world The Environment the tours belong to.
+     * @param orOpt Whether to also try Or-opt moves.
+     */
+    public TwoOptLocalSearch(Environment world, boolean orOpt) {
+        this.world = world;
+        this.orOpt = orOpt;
+    }
+
+    public double improve(int[] tour, double tourCost) {
+        if (tour.length < 8) {
+            return tourCost;
+        }
+        TourArrays arrays = getWorkingArrays(tour, tourCost);
+
+        while (!arrays.queueIsEmpty()) {
+            int city = arrays.poll();
+
+            if (tryTwoOpt(arrays, city) == 0.0 && this.orOpt) {
+                tryOrOpt(arrays, city);
+            }
+        }
+        return arrays.getCost();
+    }
+
+    /**
+     * Checks that the local search can run (the Environment has candidate lists)
+     * and returns the calling thread's working arrays, loaded with tour.
+     *
+     * @param tour     The tour to work on.
+     * @param tourCost The cost of the tour.
+     * @return The working arrays.
+     */
+    protected TourArrays getWorkingArrays(int[] tour, double tourCost) {
+        if (this.world.getCandidateList(0) == null) {
+            throw new IllegalStateException("2-opt local search needs candidate lists, set a candidate list size");
+        }
+
+        TourArrays arrays = this.workingArrays.get();
+        if (arrays == null || arrays.getNumCities() != tour.length) {
+            arrays = new TourArrays(this.world);
+            this.workingArrays.set(arrays);
+        }
+        arrays.load(tour, tourCost);
+        return arrays;
+    }
+
+    /**
+     * Looks for an improving 2-opt move that adds an edge between city and one of
+     * its candidates, and applies the first one found.
+     *
+     * @param arrays The tour being improved.
+     * @param a      The city to look at.
+     * @return How much shorter the tour got (0 if no move was found).
+     */
+    protected double tryTwoOpt(TourArrays arrays, int a) {
+        int[] candidates = this.world.getCandidateList(a);
+
+        for (int direction = 0; direction < 2; direction++) {
+            boolean forward = direction == 0;
+            int b = forward ? arrays.next(a) : arrays.previous(a);
+            double removedAB = this.world.getDistance(a, b);
+
+            for (int i = 0; i < candidates.length; i++) {
+                int c = candidates[i];
+                double addedAC = this.world.getDistance(a, c);
+                if (addedAC >= removedAB) {
+                    break;
+                }
+                int d = forward ? arrays.next(c) : arrays.previous(c);
+                if (c == b || d == a) {
+                    continue;
+                }
+
+                double gain = removedAB + this.world.getDistance(c, d) - addedAC - this.world.getDistance(b, d);
+                if (gain > EPSILON) {
+                    arrays.twoOptMove(a, b, c, d);
+                    arrays.activate(a);
+                    arrays.activate(b);
+                    arrays.activate(c);
+                    arrays.activate(d);
+                    return gain;
+                }
+            }
+        }
+        return 0.0;
+    }
+
+    /**
+     * Looks for an improving Or-opt move of a segment of 1 to 3 cities starting at
+     * city, to a place next to one of the candidates of the segment's ends, and
+     * applies the first one found.
+     *
+     * @param arrays The tour being improved.
+     * @param s1     The first city of the segment.
+     * @return How much shorter the tour got (0 if no move was found).
+     */
+    protected double tryOrOpt(TourArrays arrays, int s1) {
+        int s2 = s1;
+        for (int length = 1; length <= 3; length++) {
+            if (length > 1) {
+                s2 = arrays.next(s2);
+            }
+            int p = arrays.previous(s1);
+            int nx = arrays.next(s2);
+            double removalGain = this.world.getDistance(p, s1) + this.world.getDistance(s2, nx)
+                    - this.world.getDistance(p, nx);
+            if (removalGain <= EPSILON) {
+                continue;
+            }
+
+            for (int end = 0; end < 2; end++) {
+                int endCity = end == 0 ? s1 : s2;
+                int[] candidates = this.world.getCandidateList(endCity);
+
+                for (int i = 0; i < candidates.length; i++) {
+                    int c = candidates[i];
+                    if (this.world.getDistance(endCity, c) >= removalGain) {
+                        break;
+                    }
+                    if (arrays.inSegment(c, s1, length)) {
+                        continue;
+                    }
+
+                    // insert between c and its successor, or between c and its predecessor
+                    for (int side = 0; side < 2; side++) {
+                        int x = side == 0 ? c : arrays.previous(c);
+                        int y = side == 0 ? arrays.next(c) : c;
+                        if (arrays.inSegment(x, s1, length) || arrays.inSegment(y, s1, length)) {
+                            continue;
+                        }
+
+                        double removedXY = this.world.getDistance(x, y);
+                        double forwardCost = this.world.getDistance(x, s1) + this.world.getDistance(s2, y) - removedXY;
+                        double reversedCost = this.world.getDistance(x, s2) + this.world.getDistance(s1, y)
+                                - removedXY;
+                        boolean keepOrientation = forwardCost < reversedCost;
+                        double gain = removalGain - (keepOrientation ? forwardCost : reversedCost);
+
+                        if (gain > EPSILON) {
+                            arrays.moveSegment(p, s1, s2, nx, x, y, keepOrientation && length > 1);
+                            arrays.activate(p);
+                            arrays.activate(nx);
+                            arrays.activate(s1);
+                            arrays.activate(s2);
+                            arrays.activate(x);
+                            arrays.activate(y);
+                            return gain;
+                        }
+                    }
+                }
+            }
+        }
+        return 0.0;
+    }
+
+    /**
+     * A tour in array form (see ArrayTour) and the queue of cities whose
+     * don't-look bit is off.
+     */
+    protected static class TourArrays extends ArrayTour {
+
+        private int[] queue;
+        private boolean[] queued;
+        private int queueHead;
+        private int queueSize;
+
+        TourArrays(Environment world) {
+            super(world);
+            int numCities = world.getNumCities();
+            this.queue = new int[numCities];
+            this.queued = new boolean[numCities];
+        }
+
+        // start working on a tour, with every city active
+        public void load(int[] tour, double cost) {
+            super.load(tour, cost);
+            for (int i = 0; i < tour.length; i++) {
+                this.queue[i] = tour[i];
+                this.queued[tour[i]] = true;
+            }
+            this.queueHead = 0;
+            this.queueSize = tour.length;
+        }
+
+        boolean queueIsEmpty() {
+            return this.queueSize == 0;
+        }
+
+        int poll() {
+            int city = this.queue[this.queueHead];
+            this.queueHead = (this.queueHead + 1) % this.queue.length;
+            this.queueSize--;
+            this.queued[city] = false;
+            return city;
+        }
+
+        // switch the don't-look bit of a city off
+        void activate(int city) {
+            if (!this.queued[city]) {
+                this.queue[(this.queueHead + this.queueSize) % this.queue.length] = city;
+                this.queueSize++;
+                this.queued[city] = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * The set of cities an ant has not visited yet, kept as an array of city ids
+ * where the first size() entries are the unvisited cities, plus the position of
+ * every city in that array. Visiting a city swaps it behind the unvisited part,
+ * so membership tests, visits and resets are O(1) and never allocate, and
+ * iterating over the unvisited cities only costs as many steps as there are left.
+ * 
+ * An Ant keeps one instance and reuses it for every tour it builds.
+ */
+public class UnvisitedCities {
+
+    private int[] cities;
+    private int[] positions;
+    private int size;
+
+    /**
+     * Creates the set with every city unvisited.
+     * 
+     * @param numCities The number of cities in the problem.
+     */
+    public UnvisitedCities(int numCities) {
+        this.cities = new int[numCities];
+        this.positions = new int[numCities];
+        for (int i = 0; i < numCities; i++) {
+            this.cities[i] = i;
+            this.positions[i] = i;
+        }
+        this.size = numCities;
+    }
+
+    /**
+     * Marks every city as unvisited again. The order the unvisited cities are
+     * listed in is whatever the previous tour left behind.
+     */
+    public void reset() {
+        this.size = this.cities.length;
+    }
+
+    /**
+     * Marks a city as visited.
+     * 
+     * @param city The id of the city.
+     */
+    public void visit(int city) {
+        int position = this.positions[city];
+        if (position >= this.size) {
+            return;
+        }
+        int last = this.cities[this.size - 1];
+        this.cities[position] = last;
+        this.positions[last] = position;
+        this.cities[this.size - 1] = city;
+        this.positions[city] = this.size - 1;
+        this.size--;
+    }
+
+    /**
+     * Checks whether a city has been visited.
+     * 
+     * @param city The id of the city.
+     * @return True if the city has been visited.
+     */
+    public boolean isVisited(int city) {
+        return this.positions[city] >= this.size;
+    }
+
+    /**
+     * Getter for the number of unvisited cities.
+     * 
+     * @return The number of cities that have not been visited yet.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Get one of the unvisited cities.
+     * 
+     * @param index A number between 0 and size() - 1.
+     * @return The id of the index-th unvisited city.
+     */
+    public int get(int index) {
+        return this.cities[index];
+    }
+}